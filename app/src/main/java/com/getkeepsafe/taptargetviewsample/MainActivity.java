@@ -132,29 +132,27 @@ public class MainActivity extends AppCompatActivity {
         .titleTextDimen(R.dimen.title_text_size)
         .transparentTarget(true)
         .customElement(
-           new TapTargetView.ICustomElement() {
+           new TapTargetView.CustomElement() {
+               private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+               private final Rect rect = new Rect(0, 20, 60, 60);
+
                @Override
-               public void draw(Canvas canvas, int alpha) {
-                 final Paint paint = new Paint();
-                   paint.setAntiAlias(true);
+               public void onAttach(@NonNull TapTargetView.Invalidator invalidator) {
                    paint.setColor(Color.parseColor("#456FCC"));
-                   paint.setStrokeWidth(5);
                    paint.setStyle(Paint.Style.FILL);
-                   paint.setAlpha(alpha);
-
-                final Rect rect = new Rect(0,20,60,60);
-                canvas.drawRect(rect, paint);
                }
-               @NonNull
                @Override
-               public Rect getClickBounds(int startX, int startY) {
-                   return new Rect(startX, startY, startX + 60, startY + 60);
+               public void onLayout(int startX, int startY, @NonNull Rect outDrawBounds, @NonNull Rect outClickBounds) {
+                   outDrawBounds.set(startX, startY, startX + 60, startY + 60);
+                   outClickBounds.set(outDrawBounds);
                }
-               @NonNull
                @Override
-               public Rect getDrawBounds(int startX, int startY) {
-                   return new Rect(startX, startY, startX + 60, startY + 60);
+               public void draw(Canvas canvas, int alpha) {
+                   paint.setAlpha(alpha);
+                   canvas.drawRect(rect, paint);
                }
+               @Override
+               public void onDetach() { }
            }
         )
         .targetRadius(25),
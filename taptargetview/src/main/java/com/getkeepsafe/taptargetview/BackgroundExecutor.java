@@ -0,0 +1,48 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The single background thread of the library, for disk access and for laying out text ahead
+ * of time. Tasks run one at a time in the order they were submitted. The thread is a daemon and
+ * goes away after a few idle seconds, so it never keeps the process alive.
+ */
+final class BackgroundExecutor {
+  private static final long KEEP_ALIVE_SECONDS = 5;
+
+  static final ThreadPoolExecutor INSTANCE = newExecutor();
+
+  private BackgroundExecutor() {
+  }
+
+  private static ThreadPoolExecutor newExecutor() {
+    final ThreadFactory threadFactory = runnable -> {
+      final Thread thread = new Thread(runnable, "TapTargetView background");
+      thread.setDaemon(true);
+      return thread;
+    };
+
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
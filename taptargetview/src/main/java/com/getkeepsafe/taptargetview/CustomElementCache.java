@@ -0,0 +1,173 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RenderNode;
+import android.os.Build;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * Records what a {@link TapTargetView.CustomElement} draws, and replays it until the element
+ * reports a change or is laid out at a different size. Fading it in and out only changes the alpha it is replayed with.
+ * <p>
+ * Uses a {@link RenderNode} where available, a {@link Picture} otherwise. Pictures can't be
+ * drawn by hardware accelerated canvases before API 23, so there is no cache before that.
+ */
+final class CustomElementCache {
+  // The draw bounds, relative to the position the element is drawn at
+  private final Rect bounds = new Rect();
+  private final Rect drawnBounds = new Rect();
+  private final Recording recording;
+  private boolean dirty = true;
+
+  private CustomElementCache(Recording recording) {
+    this.recording = recording;
+  }
+
+  /** Returns a cache if the platform has a way of caching, null otherwise **/
+  @Nullable
+  static CustomElementCache create() {
+    if (Build.VERSION.SDK_INT >= 29) {
+      return new CustomElementCache(new RenderNodeRecording());
+    } else if (Build.VERSION.SDK_INT >= 23) {
+      return new CustomElementCache(new PictureRecording());
+    }
+    return null;
+  }
+
+  /** Records the element again the next time it is drawn **/
+  void invalidate() {
+    dirty = true;
+  }
+
+  /**
+   * Draws the element into the given canvas, which is translated to the position it is drawn at.
+   * Returns false if it couldn't be drawn from the cache, in which case the element should be
+   * drawn directly
+   */
+  boolean draw(Canvas canvas, TapTargetView.CustomElement element, Rect drawBounds,
+               int x, int y, int alpha) {
+    if (drawBounds.isEmpty() || !recording.canReplay(canvas)) {
+      return false;
+    }
+
+    // Laying out again without a change, e.g. when only the target moved, keeps the recording
+    drawnBounds.set(drawBounds);
+    drawnBounds.offset(-x, -y);
+    if (dirty || !drawnBounds.equals(bounds)) {
+      bounds.set(drawnBounds);
+      final Canvas recordingCanvas = recording.beginRecording(bounds);
+      recordingCanvas.translate(-bounds.left, -bounds.top);
+      element.draw(recordingCanvas, 255);
+      recording.endRecording();
+      dirty = false;
+    }
+
+    if (alpha > 0) {
+      recording.replay(canvas, bounds, alpha);
+    }
+    return true;
+  }
+
+  void release() {
+    recording.release();
+    dirty = true;
+  }
+
+  private abstract static class Recording {
+    abstract boolean canReplay(Canvas canvas);
+
+    abstract Canvas beginRecording(Rect bounds);
+
+    abstract void endRecording();
+
+    abstract void replay(Canvas canvas, Rect bounds, int alpha);
+
+    abstract void release();
+  }
+
+  @RequiresApi(29)
+  private static final class RenderNodeRecording extends Recording {
+    private final RenderNode node = new RenderNode("TapTargetCustomElement");
+
+    @Override
+    boolean canReplay(Canvas canvas) {
+      return canvas.isHardwareAccelerated();
+    }
+
+    @Override
+    Canvas beginRecording(Rect bounds) {
+      node.setPosition(bounds);
+      return node.beginRecording(bounds.width(), bounds.height());
+    }
+
+    @Override
+    void endRecording() {
+      node.endRecording();
+    }
+
+    @Override
+    void replay(Canvas canvas, Rect bounds, int alpha) {
+      // Alpha is a property of the node, changing it doesn't record anything again
+      node.setAlpha(alpha / 255.0f);
+      canvas.drawRenderNode(node);
+    }
+
+    @Override
+    void release() {
+      node.discardDisplayList();
+    }
+  }
+
+  @RequiresApi(23)
+  private static final class PictureRecording extends Recording {
+    private final Picture picture = new Picture();
+
+    @Override
+    boolean canReplay(Canvas canvas) {
+      return true;
+    }
+
+    @Override
+    Canvas beginRecording(Rect bounds) {
+      return picture.beginRecording(bounds.width(), bounds.height());
+    }
+
+    @Override
+    void endRecording() {
+      picture.endRecording();
+    }
+
+    @Override
+    void replay(Canvas canvas, Rect bounds, int alpha) {
+      final int saveCount = alpha < 255
+          ? canvas.saveLayerAlpha(bounds.left, bounds.top, bounds.right, bounds.bottom, alpha)
+          : canvas.save();
+      canvas.translate(bounds.left, bounds.top);
+      canvas.drawPicture(picture);
+      canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    void release() {
+      // What was recorded is replaced by the next recording
+    }
+  }
+}
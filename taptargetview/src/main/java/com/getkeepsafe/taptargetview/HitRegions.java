@@ -0,0 +1,207 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.graphics.Rect;
+
+import java.util.Arrays;
+
+/**
+ * The interactive regions of a {@link TapTargetView}, tested topmost first.
+ * <p>
+ * Regions are added when laid out, and may be moved or resized afterwards without allocating.
+ * Hit testing is done with squared distances and doesn't allocate either, so it is safe to do on
+ * every touch event.
+ */
+final class HitRegions {
+  static final int NONE = Integer.MIN_VALUE;
+
+  private static final int CIRCLE = 0;
+  private static final int ROUND_RECT = 1;
+  private static final int SHAPE = 2;
+
+  private static final class Region {
+    int id;
+    int z;
+    int type;
+    float left;
+    float top;
+    float right;
+    float bottom;
+    // The corner radius of a round rect, or the radius of a circle centered in the bounds
+    float radius;
+    TapTargetView.HitShape shape;
+  }
+
+  // Sorted by z, topmost last. Slots past size are kept to be reused
+  private Region[] regions = new Region[8];
+  private int size;
+
+  /** Adds a circle region, or replaces the region with the same id **/
+  void setCircle(int id, float centerX, float centerY, float radius, int z) {
+    final Region region = obtain(id, z, CIRCLE);
+    region.left = centerX - radius;
+    region.top = centerY - radius;
+    region.right = centerX + radius;
+    region.bottom = centerY + radius;
+    region.radius = radius;
+  }
+
+  /** Adds a rect region with optionally rounded corners, or replaces the region with the same id **/
+  void setRoundRect(int id, float left, float top, float right, float bottom, float cornerRadius, int z) {
+    final Region region = obtain(id, z, ROUND_RECT);
+    region.left = left;
+    region.top = top;
+    region.right = right;
+    region.bottom = bottom;
+    region.radius = Math.max(0, Math.min(cornerRadius, Math.min(right - left, bottom - top) / 2));
+  }
+
+  void setRect(int id, Rect bounds, int z) {
+    setRoundRect(id, bounds.left, bounds.top, bounds.right, bounds.bottom, 0, z);
+  }
+
+  /** Adds a region of the given shape, or replaces the region with the same id **/
+  void setShape(int id, TapTargetView.HitShape shape, int z) {
+    obtain(id, z, SHAPE).shape = shape;
+  }
+
+  /** Moves a circle region without changing its z-order **/
+  void moveCircle(int id, float centerX, float centerY, float radius) {
+    final Region region = find(id);
+    if (region == null || region.type != CIRCLE) {
+      return;
+    }
+
+    region.left = centerX - radius;
+    region.top = centerY - radius;
+    region.right = centerX + radius;
+    region.bottom = centerY + radius;
+    region.radius = radius;
+  }
+
+  /** Moves a rect region without changing its z-order **/
+  void moveRect(int id, Rect bounds) {
+    final Region region = find(id);
+    if (region == null || region.type != ROUND_RECT) {
+      return;
+    }
+
+    region.left = bounds.left;
+    region.top = bounds.top;
+    region.right = bounds.right;
+    region.bottom = bounds.bottom;
+  }
+
+  void remove(int id) {
+    final int index = indexOf(id);
+    if (index < 0) {
+      return;
+    }
+
+    final Region removed = regions[index];
+    removed.shape = null;
+    System.arraycopy(regions, index + 1, regions, index, size - index - 1);
+    regions[--size] = removed;
+  }
+
+  /** Returns the id of the topmost region containing the given point, or {@link #NONE} **/
+  int hitTest(float x, float y) {
+    for (int i = size - 1; i >= 0; --i) {
+      final Region region = regions[i];
+      if (contains(region, x, y)) {
+        return region.id;
+      }
+    }
+
+    return NONE;
+  }
+
+  private static boolean contains(Region region, float x, float y) {
+    if (region.type == SHAPE) {
+      return region.shape.contains(x, y);
+    }
+
+    if (x < region.left || x > region.right || y < region.top || y > region.bottom) {
+      return false;
+    }
+
+    final float radius = region.radius;
+    if (radius <= 0) {
+      return true;
+    }
+
+    final float dx;
+    final float dy;
+    if (region.type == CIRCLE) {
+      dx = x - (region.left + radius);
+      dy = y - (region.top + radius);
+    } else {
+      // Only the corners are rounded, measure from the nearest corner's center
+      dx = Math.max(0, Math.max(region.left + radius - x, x - (region.right - radius)));
+      dy = Math.max(0, Math.max(region.top + radius - y, y - (region.bottom - radius)));
+    }
+    return dx * dx + dy * dy <= radius * radius;
+  }
+
+  private Region obtain(int id, int z, int type) {
+    final int existing = indexOf(id);
+    final Region region;
+    if (existing >= 0) {
+      region = regions[existing];
+      System.arraycopy(regions, existing + 1, regions, existing, size - existing - 1);
+      regions[--size] = region;
+    } else {
+      if (size == regions.length) {
+        regions = Arrays.copyOf(regions, size * 2);
+      }
+      if (regions[size] == null) {
+        regions[size] = new Region();
+      }
+      region = regions[size];
+    }
+
+    // Insert after every region with a z-order that is lower or the same
+    int index = size;
+    while (index > 0 && regions[index - 1].z > z) {
+      --index;
+    }
+    System.arraycopy(regions, index, regions, index + 1, size - index);
+    regions[index] = region;
+    ++size;
+
+    region.id = id;
+    region.z = z;
+    region.type = type;
+    region.shape = null;
+    region.radius = 0;
+    return region;
+  }
+
+  private Region find(int id) {
+    final int index = indexOf(id);
+    return index >= 0 ? regions[index] : null;
+  }
+
+  private int indexOf(int id) {
+    for (int i = 0; i < size; ++i) {
+      if (regions[i].id == id) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
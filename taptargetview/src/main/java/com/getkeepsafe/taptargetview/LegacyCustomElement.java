@@ -0,0 +1,49 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import androidx.annotation.NonNull;
+
+/**
+ * Adapts a {@link TapTargetView.ICustomElement} to {@link TapTargetView.CustomElement}. Its bounds
+ * are only queried when laid out, rather than on every tap
+ */
+final class LegacyCustomElement implements TapTargetView.CustomElement {
+  final TapTargetView.ICustomElement element;
+
+  LegacyCustomElement(TapTargetView.ICustomElement element) {
+    this.element = element;
+  }
+
+  @Override
+  public void onAttach(@NonNull TapTargetView.Invalidator invalidator) { }
+
+  @Override
+  public void onLayout(int startX, int startY, @NonNull Rect outDrawBounds, @NonNull Rect outClickBounds) {
+    outDrawBounds.set(element.getDrawBounds(startX, startY));
+    outClickBounds.set(element.getClickBounds(startX, startY));
+  }
+
+  @Override
+  public void draw(Canvas canvas, int alpha) {
+    element.draw(canvas, alpha);
+  }
+
+  @Override
+  public void onDetach() { }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import androidx.annotation.Nullable;
+import android.view.View;
+
+class LocatorTapTarget extends ViewTapTarget {
+  private final TapTargetLocator locator;
+
+  LocatorTapTarget(TapTargetLocator locator, CharSequence title,
+                   @Nullable CharSequence description, @Nullable CharSequence buttonText) {
+    super(title, description, buttonText);
+    if (locator == null) {
+      throw new IllegalArgumentException("Given null locator");
+    }
+
+    this.locator = locator;
+  }
+
+  @Override
+  View resolveView() {
+    return locator.locate();
+  }
+}
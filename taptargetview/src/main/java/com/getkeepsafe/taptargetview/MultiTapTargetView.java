@@ -0,0 +1,558 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.animation.ValueAnimator;
+import android.annotation.SuppressLint;
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import androidx.annotation.Nullable;
+import androidx.core.view.ViewCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Highlights several {@link TapTarget}s at once, within a single view.
+ * <p>
+ * Each target gets its own outer circle with its title and description, or all targets share a
+ * single caption instead. All targets expand, pulse and dismiss on the same animation timeline
+ * and are drawn in a single pass, so showing more targets only adds to what is drawn.
+ * <p>
+ * Colors, text and icons are taken from each target, and are sized, placed and dimmed the same
+ * way {@link TapTargetView} does. Shadows and custom elements are not
+ * supported here, use {@link TapTargetView} for those.
+ */
+@SuppressLint("ViewConstructor")
+public class MultiTapTargetView extends View {
+  private final ViewGroup parent;
+  private final List<Element> elements = new ArrayList<>();
+  @Nullable
+  private final CharSequence caption;
+  @Nullable
+  private StaticLayout captionLayout;
+  private final Rect captionBounds = new Rect();
+  private final Listener listener;
+  private final boolean cancelable;
+  // Outer circles and target circles of the elements, see #layoutHitRegions()
+  private final HitRegions hitRegions = new HitRegions();
+  @Nullable
+  View boundingParent;
+
+  final int TARGET_PADDING;
+  final int TEXT_PADDING;
+  final int TEXT_SPACING;
+  final int TEXT_MAX_WIDTH;
+  final int TEXT_POSITIONING_BIAS;
+  final int CIRCLE_PADDING;
+  final int HALO_DIM;
+
+  // The part of the window that is not covered by system ui
+  int topBoundary;
+  int bottomBoundary;
+
+  // Applied once we know our boundaries, or -1 when there is no dim
+  final int dimColor;
+
+  int pendingCount;
+  boolean visible;
+  boolean isInteractable;
+  boolean isDismissing;
+  boolean isDismissed;
+  float expandLerp;
+  float pulseLerp;
+
+  float lastTouchX;
+  float lastTouchY;
+
+  public static class Listener {
+    public void onTargetClick(MultiTapTargetView view, TapTarget target) {
+      view.dismiss();
+    }
+
+    public void onOuterCircleClick(MultiTapTargetView view, TapTarget target) { }
+
+    public void onCancel(MultiTapTargetView view) {
+      view.dismiss();
+    }
+
+    public void onDismissed(MultiTapTargetView view) { }
+  }
+
+  /** A single target, along with everything needed to draw it **/
+  static final class Element {
+    final TapTarget target;
+    final Rect targetBounds = new Rect();
+    final Rect textBounds = new Rect();
+    final Paint outerCirclePaint = new Paint();
+    final Paint targetCirclePaint = new Paint();
+    final TextPaint titlePaint = new TextPaint();
+    final TextPaint descriptionPaint = new TextPaint();
+    @Nullable
+    StaticLayout titleLayout;
+    @Nullable
+    StaticLayout descriptionLayout;
+    @Nullable
+    Bitmap tintedIcon;
+    int outerCircleAlpha;
+    int targetRadius;
+    int outerRadius;
+    boolean ready;
+
+    Element(TapTarget target) {
+      this.target = target;
+      outerCirclePaint.setAntiAlias(true);
+      targetCirclePaint.setAntiAlias(true);
+      titlePaint.setAntiAlias(true);
+      descriptionPaint.setAntiAlias(true);
+    }
+  }
+
+  final ValueAnimator expandAnimation = new FloatValueAnimatorBuilder()
+      .duration(250)
+      .interpolator(new AccelerateDecelerateInterpolator())
+      .onUpdate(new FloatValueAnimatorBuilder.UpdateListener() {
+        @Override
+        public void onUpdate(float lerpTime) {
+          expandLerp = lerpTime;
+          invalidate();
+        }
+      })
+      .onEnd(() -> {
+        if (isDismissing || isDismissed) {
+          return;
+        }
+
+        isInteractable = true;
+        pulseAnimation.start();
+      })
+      .build();
+
+  final ValueAnimator pulseAnimation = new FloatValueAnimatorBuilder()
+      .duration(1000)
+      .repeat(ValueAnimator.INFINITE)
+      .interpolator(new AccelerateDecelerateInterpolator())
+      .onUpdate(new FloatValueAnimatorBuilder.UpdateListener() {
+        @Override
+        public void onUpdate(float lerpTime) {
+          pulseLerp = lerpTime;
+          invalidate();
+        }
+      })
+      .build();
+
+  final ValueAnimator dismissAnimation = new FloatValueAnimatorBuilder(true)
+      .duration(250)
+      .interpolator(new AccelerateDecelerateInterpolator())
+      .onUpdate(new FloatValueAnimatorBuilder.UpdateListener() {
+        @Override
+        public void onUpdate(float lerpTime) {
+          expandLerp = lerpTime;
+          invalidate();
+        }
+      })
+      .onEnd(() -> {
+        if (isDismissing) {
+          finishDismiss();
+        }
+      })
+      .build();
+
+  private final ViewTreeObserver.OnGlobalLayoutListener globalLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+    @Override
+    public void onGlobalLayout() {
+      // Our size is known now. Waiting starts only once, every target is asked to get ready once
+      ViewUtil.removeOnGlobalLayoutListener(getViewTreeObserver(), this);
+      if (!visible && !isDismissing && !isDismissed) {
+        awaitTargets();
+      }
+    }
+  };
+
+  /**
+   * Shows the given targets at once, each with its own title and description
+   */
+  public static MultiTapTargetView showFor(Activity activity, List<TapTarget> targets, @Nullable Listener listener) {
+    return showFor(activity, targets, null, listener);
+  }
+
+  /**
+   * Shows the given targets at once. If a caption is given, it is shown in place of the title and
+   * description of each target.
+   */
+  public static MultiTapTargetView showFor(Activity activity, List<TapTarget> targets, @Nullable CharSequence caption,
+                                           @Nullable Listener listener) {
+    if (activity == null) throw new IllegalArgumentException("Activity is null");
+
+    final ViewGroup decor = (ViewGroup) activity.getWindow().getDecorView();
+    final TapTargetOverlayHost host = TapTargetOverlayHost.find(decor);
+    final ViewGroup parent = host != null ? host : decor;
+    final MultiTapTargetView view = new MultiTapTargetView(activity, parent, targets, caption, listener);
+    view.boundingParent = decor.findViewById(android.R.id.content);
+    parent.addView(view, new ViewGroup.LayoutParams(
+        ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+    return view;
+  }
+
+  public MultiTapTargetView(Context context, ViewGroup parent, List<TapTarget> targets,
+                            @Nullable CharSequence caption, @Nullable Listener listener) {
+    super(context);
+    if (targets == null || targets.isEmpty()) throw new IllegalArgumentException("Given no targets");
+
+    this.parent = parent;
+    this.caption = caption;
+    this.listener = listener != null ? listener : new Listener();
+
+    TARGET_PADDING = UiUtil.dp(context, TargetLayout.TARGET_PADDING);
+    TEXT_PADDING = UiUtil.dp(context, TargetLayout.TEXT_PADDING);
+    TEXT_SPACING = UiUtil.dp(context, TargetLayout.TEXT_SPACING);
+    TEXT_MAX_WIDTH = UiUtil.dp(context, TargetLayout.TEXT_MAX_WIDTH);
+    TEXT_POSITIONING_BIAS = UiUtil.dp(context, TargetLayout.TEXT_POSITIONING_BIAS);
+    CIRCLE_PADDING = UiUtil.dp(context, TargetLayout.CIRCLE_PADDING);
+    HALO_DIM = UiUtil.dp(context, 24);
+
+    final boolean isDark = UiUtil.themeIntAttr(context, "isLightTheme") == 0;
+    boolean cancelable = true;
+    boolean hasTransparentTarget = false;
+    for (final TapTarget target : targets) {
+      if (target == null) throw new IllegalArgumentException("Given null target");
+
+      final Element element = new Element(target);
+      final Integer outerCircleColor = target.outerCircleColorInt(context);
+      element.outerCirclePaint.setColor(outerCircleColor != null
+          ? outerCircleColor : UiUtil.themeIntAttr(context, "colorPrimary"));
+      element.outerCircleAlpha = (int) (target.outerCircleAlpha * 255.0f);
+      element.targetCirclePaint.setColor(TapTargetView.targetCircleColor(context, target, isDark));
+      if (target.transparentTarget) {
+        element.targetCirclePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+      }
+      element.targetRadius = UiUtil.dp(context, target.targetRadius);
+      TapTargetView.applyTextOptions(context, target, isDark, element.titlePaint, element.descriptionPaint,
+          new TextPaint());
+      elements.add(element);
+      cancelable &= target.cancelable;
+      hasTransparentTarget |= target.transparentTarget;
+    }
+    this.cancelable = cancelable;
+
+    final Integer dimColor = targets.get(0).dimColorInt(context);
+    this.dimColor = dimColor != null ? UiUtil.setAlpha(dimColor, 0.3f) : -1;
+
+    // Transparent targets punch holes into everything drawn so far, dim included, which needs a
+    // layer. Otherwise, like TapTargetView, we keep the dim out of a layer that every frame redraws
+    if (hasTransparentTarget) {
+      setLayerType(LAYER_TYPE_HARDWARE, null);
+    }
+    setFocusableInTouchMode(true);
+    setClickable(true);
+    setOnClickListener(v -> onClick());
+    getViewTreeObserver().addOnGlobalLayoutListener(globalLayoutListener);
+  }
+
+  private void awaitTargets() {
+    pendingCount = elements.size();
+    for (final Element element : new ArrayList<>(elements)) {
+      element.target.onReady(() -> {
+        element.ready = true;
+        onTargetSettled();
+      }, () -> {
+        // Show the others without it
+        elements.remove(element);
+        onTargetSettled();
+      });
+    }
+  }
+
+  private void onTargetSettled() {
+    if (--pendingCount > 0 || visible || isDismissing || isDismissed) {
+      return;
+    }
+
+    if (elements.isEmpty()) {
+      dismiss();
+      return;
+    }
+
+    calculateBoundaries();
+    if (dimColor != -1) {
+      ViewCompat.setBackground(this, TargetLayout.newDimBackground(dimColor,
+          TargetLayout.dimInsets(topBoundary, bottomBoundary, getHeight())));
+    }
+
+    for (final Element element : elements) {
+      layoutElement(element);
+    }
+    layoutCaption();
+    layoutHitRegions();
+
+    requestFocus();
+    visible = true;
+    expandAnimation.start();
+  }
+
+  private void calculateBoundaries() {
+    if (boundingParent != null) {
+      final int[] boundaries = new int[2];
+      TargetLayout.calculateBoundaries(getContext(), boundingParent, boundaries);
+      topBoundary = boundaries[0];
+      bottomBoundary = boundaries[1];
+    } else {
+      topBoundary = 0;
+      bottomBoundary = getHeight();
+    }
+  }
+
+  void layoutElement(Element element) {
+    final int[] offset = new int[2];
+    getLocationOnScreen(offset);
+    element.targetBounds.set(element.target.bounds());
+    element.targetBounds.offset(-offset[0], -offset[1]);
+
+    final TapTarget target = element.target;
+    if (target.icon != null && target.tintTarget && !target.transparentTarget && element.tintedIcon == null) {
+      element.tintedIcon = TapTargetView.tintBitmap(target.icon, element.targetCirclePaint.getColor());
+    }
+
+    final int centerX = element.targetBounds.centerX();
+    final int centerY = element.targetBounds.centerY();
+    if (caption != null) {
+      element.outerRadius = element.targetRadius + HALO_DIM;
+      return;
+    }
+
+    final int textWidth = TargetLayout.availableTextWidth(getWidth(), TEXT_MAX_WIDTH, TEXT_PADDING);
+    element.titleLayout = TapTargetView.newTextLayout(target.title, element.titlePaint, textWidth);
+    element.descriptionLayout = target.description != null
+        ? TapTargetView.newTextLayout(target.description, element.descriptionPaint, textWidth) : null;
+
+    // Placed the same way TapTargetView places it
+    element.textBounds.set(TargetLayout.textBounds(element.targetBounds, element.targetRadius + TARGET_PADDING,
+        TargetLayout.textWidth(element.titleLayout, element.descriptionLayout),
+        TargetLayout.textHeight(element.titleLayout, element.descriptionLayout, TEXT_SPACING),
+        getWidth(), topBoundary, TEXT_PADDING, TEXT_POSITIONING_BIAS));
+
+    element.outerRadius = Math.max(element.targetRadius + HALO_DIM,
+        TargetLayout.maxDistanceToPoints(centerX, centerY, element.textBounds) + CIRCLE_PADDING);
+  }
+
+  /**
+   * Registers two regions per element, ids {@code 2 * index} for its outer circle and
+   * {@code 2 * index + 1} for its target, with later elements on top of earlier ones
+   */
+  private void layoutHitRegions() {
+    for (int i = 0; i < elements.size(); ++i) {
+      final Element element = elements.get(i);
+      final int centerX = element.targetBounds.centerX();
+      final int centerY = element.targetBounds.centerY();
+      hitRegions.setCircle(2 * i, centerX, centerY, element.outerRadius, 2 * i);
+      hitRegions.setCircle(2 * i + 1, centerX, centerY, element.targetRadius, 2 * i + 1);
+    }
+  }
+
+  private void layoutCaption() {
+    if (caption == null) {
+      return;
+    }
+
+    final int textWidth = TargetLayout.availableTextWidth(getWidth(), TEXT_MAX_WIDTH * 3 / 2, TEXT_PADDING);
+    captionLayout = TapTargetView.newTextLayout(caption, elements.get(0).titlePaint, textWidth);
+
+    // In whichever half of the screen has fewer targets
+    int targetsAbove = 0;
+    final int middle = (topBoundary + bottomBoundary) / 2;
+    for (final Element element : elements) {
+      if (element.targetBounds.centerY() < middle) {
+        ++targetsAbove;
+      }
+    }
+
+    final int left = (getWidth() - textWidth) / 2;
+    final int top = targetsAbove * 2 > elements.size()
+        ? bottomBoundary - TEXT_PADDING * 2 - captionLayout.getHeight()
+        : topBoundary + TEXT_PADDING * 2;
+    captionBounds.set(left, top, left + textWidth, top + captionLayout.getHeight());
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    if (!visible || isDismissed) {
+      return;
+    }
+
+    final int textAlpha = (int) (Math.max(0.0f, expandLerp - 0.7f) / 0.3f * 255);
+    final float pulse = TargetLayout.halfwayLerp(pulseLerp);
+    for (int i = 0; i < elements.size(); ++i) {
+      final Element element = elements.get(i);
+      final int centerX = element.targetBounds.centerX();
+      final int centerY = element.targetBounds.centerY();
+
+      element.outerCirclePaint.setAlpha((int) (Math.min(1.0f, expandLerp * 1.5f) * element.outerCircleAlpha));
+      canvas.drawCircle(centerX, centerY, element.outerRadius * expandLerp, element.outerCirclePaint);
+
+      final float targetRadius = element.targetRadius * Math.min(1.0f, expandLerp * 1.5f)
+          + pulse * element.targetRadius * 0.1f;
+      element.targetCirclePaint.setAlpha((int) (Math.min(1.0f, expandLerp * 1.5f) * 255));
+      canvas.drawCircle(centerX, centerY, targetRadius, element.targetCirclePaint);
+
+      if (element.tintedIcon != null) {
+        canvas.drawBitmap(element.tintedIcon, centerX - element.tintedIcon.getWidth() / 2,
+            centerY - element.tintedIcon.getHeight() / 2, element.targetCirclePaint);
+      } else if (element.target.icon != null) {
+        final int saveCount = canvas.save();
+        canvas.translate(centerX - element.target.icon.getBounds().width() / 2,
+            centerY - element.target.icon.getBounds().height() / 2);
+        element.target.icon.setAlpha(element.targetCirclePaint.getAlpha());
+        element.target.icon.draw(canvas);
+        canvas.restoreToCount(saveCount);
+      }
+
+      if (element.titleLayout != null && textAlpha > 0) {
+        final int saveCount = canvas.save();
+        canvas.translate(element.textBounds.left, element.textBounds.top);
+        element.titlePaint.setAlpha(textAlpha);
+        element.titleLayout.draw(canvas);
+        if (element.descriptionLayout != null) {
+          canvas.translate(0, element.titleLayout.getHeight() + TEXT_SPACING);
+          element.descriptionPaint.setAlpha((int) (element.target.descriptionTextAlpha * textAlpha));
+          element.descriptionLayout.draw(canvas);
+        }
+        canvas.restoreToCount(saveCount);
+      }
+    }
+
+    if (captionLayout != null && textAlpha > 0) {
+      final int saveCount = canvas.save();
+      canvas.translate(captionBounds.left, captionBounds.top);
+      captionLayout.getPaint().setAlpha(textAlpha);
+      captionLayout.draw(canvas);
+      canvas.restoreToCount(saveCount);
+    }
+  }
+
+  @Override
+  public boolean onTouchEvent(MotionEvent e) {
+    lastTouchX = e.getX();
+    lastTouchY = e.getY();
+    return super.onTouchEvent(e);
+  }
+
+  /** Maps the last tap to the topmost target or outer circle it hit, or cancels **/
+  private void onClick() {
+    if (!isInteractable) {
+      return;
+    }
+
+    final int region = hitRegions.hitTest(lastTouchX, lastTouchY);
+    if (region != HitRegions.NONE) {
+      final TapTarget target = elements.get(region / 2).target;
+      if (region % 2 == 1) {
+        listener.onTargetClick(this, target);
+      } else {
+        listener.onOuterCircleClick(this, target);
+      }
+      return;
+    }
+
+    if (cancelable) {
+      isInteractable = false;
+      listener.onCancel(this);
+    }
+  }
+
+  @Override
+  public boolean onKeyDown(int keyCode, KeyEvent event) {
+    if (visible && cancelable && keyCode == KeyEvent.KEYCODE_BACK) {
+      event.startTracking();
+      return true;
+    }
+
+    return false;
+  }
+
+  @Override
+  public boolean onKeyUp(int keyCode, KeyEvent event) {
+    if (visible && isInteractable && cancelable
+        && keyCode == KeyEvent.KEYCODE_BACK && event.isTracking() && !event.isCanceled()) {
+      isInteractable = false;
+      listener.onCancel(this);
+      return true;
+    }
+
+    return false;
+  }
+
+  /** Dismisses all targets at once **/
+  public void dismiss() {
+    if (isDismissing || isDismissed) {
+      return;
+    }
+
+    isDismissing = true;
+    isInteractable = false;
+    expandAnimation.cancel();
+    pulseAnimation.cancel();
+    if (!visible) {
+      finishDismiss();
+      return;
+    }
+
+    dismissAnimation.start();
+  }
+
+  private void finishDismiss() {
+    onDismiss();
+    ViewUtil.removeView(parent, this);
+  }
+
+  private void onDismiss() {
+    if (isDismissed) {
+      return;
+    }
+
+    isDismissing = false;
+    isDismissed = true;
+    expandAnimation.cancel();
+    pulseAnimation.cancel();
+    dismissAnimation.cancel();
+    ViewUtil.removeOnGlobalLayoutListener(getViewTreeObserver(), globalLayoutListener);
+    listener.onDismissed(this);
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+    onDismiss();
+  }
+
+  /** Returns whether the targets are currently shown **/
+  public boolean isVisible() {
+    return visible && !isDismissed;
+  }
+}
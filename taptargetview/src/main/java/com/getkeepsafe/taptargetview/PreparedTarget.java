@@ -0,0 +1,156 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import androidx.annotation.Nullable;
+
+/**
+ * Work for a target that is about to be shown, done while the current one is pulsing: resolving
+ * its bounds and tinting its icon when the main thread is idle, and laying out its text on a
+ * background thread. Whatever is done by the time the target gets bound is adopted by
+ * {@link TapTargetView}, the rest is simply done as usual.
+ * <p>
+ * Only plain strings are laid out in the background. Other text, such as spanned text, may be
+ * changed by the app on the main thread at any time, so it is laid out when the main thread is
+ * idle instead.
+ */
+final class PreparedTarget implements MessageQueue.IdleHandler {
+  private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+  final TapTarget target;
+  final int textWidth;
+  final TextPaint titlePaint = new TextPaint();
+  final TextPaint descriptionPaint = new TextPaint();
+  final TextPaint buttonTextPaint = new TextPaint();
+
+  private final int tintColor;
+  private final boolean tint;
+
+  // Only touched on the main thread
+  boolean textLaidOut;
+  @Nullable
+  StaticLayout titleLayout;
+  @Nullable
+  StaticLayout descriptionLayout;
+  @Nullable
+  StaticLayout buttonTextLayout;
+  @Nullable
+  Bitmap tintedTarget;
+
+  private volatile boolean canceled;
+
+  PreparedTarget(TapTarget target, int textWidth, int tintColor, boolean tint) {
+    this.target = target;
+    this.textWidth = textWidth;
+    this.tintColor = tintColor;
+    this.tint = tint;
+  }
+
+  /** Starts preparing. The text paints must be set up before this is called **/
+  void start() {
+    titlePaint.setAntiAlias(true);
+    descriptionPaint.setAntiAlias(true);
+    buttonTextPaint.setAntiAlias(true);
+    Looper.myQueue().addIdleHandler(this);
+    if (isPlainText()) {
+      BackgroundExecutor.INSTANCE.execute(this::layoutTextInBackground);
+    }
+  }
+
+  private boolean isPlainText() {
+    return target.title instanceof String
+        && (target.description == null || target.description instanceof String)
+        && (target.buttonText == null || target.buttonText instanceof String);
+  }
+
+  /** Stops any remaining work. Work that is already done stays available **/
+  void cancel() {
+    canceled = true;
+    Looper.myQueue().removeIdleHandler(this);
+  }
+
+  @Override
+  public boolean queueIdle() {
+    if (canceled) {
+      return false;
+    }
+
+    if (!isPlainText()) {
+      layoutText();
+    }
+
+    // Targets that have to scroll or otherwise disturb the screen to resolve are left alone
+    if (!target.canResolveEarly()) {
+      tintIcon();
+      return false;
+    }
+
+    target.onReady(this::tintIcon, () -> {
+      // The target will report this itself once it is bound, e.g. a toolbar item not there yet
+    });
+
+    return false;
+  }
+
+  private void tintIcon() {
+    if (canceled || !tint || target.icon == null || tintedTarget != null
+        || TapTargetView.isAnimated(target.icon)) {
+      return;
+    }
+
+    tintedTarget = TapTargetView.tintBitmap(target.icon, tintColor);
+  }
+
+  private void layoutTextInBackground() {
+    if (canceled) {
+      return;
+    }
+
+    final StaticLayout title = TapTargetView.newTextLayout(target.title, titlePaint, textWidth);
+    final StaticLayout description = target.description != null
+        ? TapTargetView.newTextLayout(target.description, descriptionPaint, textWidth) : null;
+    final StaticLayout buttonText = target.buttonText != null
+        ? TapTargetView.newTextLayout(target.buttonText, buttonTextPaint, textWidth) : null;
+
+    MAIN_HANDLER.post(() -> adoptText(title, description, buttonText));
+  }
+
+  private void layoutText() {
+    adoptText(TapTargetView.newTextLayout(target.title, titlePaint, textWidth),
+        target.description != null
+            ? TapTargetView.newTextLayout(target.description, descriptionPaint, textWidth) : null,
+        target.buttonText != null
+            ? TapTargetView.newTextLayout(target.buttonText, buttonTextPaint, textWidth) : null);
+  }
+
+  private void adoptText(StaticLayout title, @Nullable StaticLayout description,
+                         @Nullable StaticLayout buttonText) {
+    if (canceled) {
+      return;
+    }
+
+    titleLayout = title;
+    descriptionLayout = description;
+    buttonTextLayout = buttonText;
+    textLaidOut = true;
+  }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Waits for views to be laid out on behalf of pending tap targets.
+ * <p>
+ * A single {@link ViewTreeObserver.OnGlobalLayoutListener} is registered per view tree, no matter
+ * how many targets are waiting on it, and every waiter of that tree is evaluated in one pass per
+ * layout. The listener is removed as soon as the tree has no more waiters. Waiters can time out,
+ * be canceled, and are dropped when their view is detached from its window. Waiters on a view
+ * that isn't attached yet move over to the window's tree once it is attached.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+public final class ReadinessDispatcher implements ViewTreeObserver.OnGlobalLayoutListener {
+  private static final Map<ViewTreeObserver, ReadinessDispatcher> dispatchers = new WeakHashMap<>();
+  private static final Handler handler = new Handler(Looper.getMainLooper());
+  private static int pendingWaiters;
+
+  private final ViewTreeObserver observer;
+  private final ArrayList<Waiter> waiters = new ArrayList<>();
+  private final ArrayList<Waiter> readyWaiters = new ArrayList<>();
+
+  private ReadinessDispatcher(ViewTreeObserver observer) {
+    this.observer = observer;
+  }
+
+  /** Returns the number of waiters, across all view trees, that are still waiting on a layout **/
+  @UiThread
+  public static int pendingWaiterCount() {
+    return pendingWaiters;
+  }
+
+  /** Returns the number of view trees that currently have a layout listener registered **/
+  @UiThread
+  public static int activeTreeCount() {
+    return dispatchers.size();
+  }
+
+  /**
+   * Runs {@code onReady} once the given view is laid out, immediately if it already is. Otherwise
+   * the first layout of its tree after this call counts as laid out, even if the view ends up
+   * without a size.
+   *
+   * @param onTimeout Optional. Invoked instead of {@code onReady} if the view isn't laid out within
+   *                  {@code timeoutMillis}, or if it is detached from its window before then
+   * @param timeoutMillis How long to wait for, or 0 to wait indefinitely
+   * @return The pending waiter, or null if {@code onReady} has already run
+   */
+  @Nullable
+  static Waiter await(View view, Runnable onReady, @Nullable Runnable onTimeout, long timeoutMillis) {
+    if (ViewUtil.isLaidOut(view)) {
+      onReady.run();
+      return null;
+    }
+
+    final Waiter waiter = new Waiter(dispatcherFor(view.getViewTreeObserver()), view, onReady, onTimeout);
+    waiter.dispatcher.waiters.add(waiter);
+    pendingWaiters++;
+
+    view.addOnAttachStateChangeListener(waiter);
+    if (timeoutMillis > 0) {
+      handler.postDelayed(waiter, timeoutMillis);
+    }
+
+    return waiter;
+  }
+
+  private static ReadinessDispatcher dispatcherFor(ViewTreeObserver observer) {
+    ReadinessDispatcher dispatcher = dispatchers.get(observer);
+    if (dispatcher == null) {
+      dispatcher = new ReadinessDispatcher(observer);
+      dispatchers.put(observer, dispatcher);
+      observer.addOnGlobalLayoutListener(dispatcher);
+    }
+    return dispatcher;
+  }
+
+  @Override
+  public void onGlobalLayout() {
+    // Every waiter is ready after the first layout since it started waiting, regardless of the
+    // size of its view. Collect them first, so that waiters added or canceled while running
+    // callbacks don't disturb this pass
+    for (int i = waiters.size() - 1; i >= 0; --i) {
+      final Waiter waiter = waiters.get(i);
+      remove(waiter);
+      readyWaiters.add(waiter);
+    }
+
+    for (int i = readyWaiters.size() - 1; i >= 0; --i) {
+      readyWaiters.get(i).onReady.run();
+    }
+    readyWaiters.clear();
+  }
+
+  void remove(Waiter waiter) {
+    if (waiter.done) {
+      return;
+    }
+
+    waiter.done = true;
+    pendingWaiters--;
+    handler.removeCallbacks(waiter);
+    waiter.view.removeOnAttachStateChangeListener(waiter);
+    detach(waiter);
+  }
+
+  /**
+   * Moves the given waiter over to the tree its view is in now. Before a view is attached, it has
+   * an observer of its own, which is merged into the window's once it is attached
+   */
+  void move(Waiter waiter) {
+    final ViewTreeObserver current = waiter.view.getViewTreeObserver();
+    if (waiter.done || current == observer) {
+      return;
+    }
+
+    detach(waiter);
+    waiter.dispatcher = dispatcherFor(current);
+    waiter.dispatcher.waiters.add(waiter);
+  }
+
+  private void detach(Waiter waiter) {
+    waiters.remove(waiter);
+    if (waiters.isEmpty()) {
+      // Our observer may have been merged into the window's observer when the tree was attached
+      final ViewTreeObserver liveObserver = observer.isAlive() ? observer : waiter.view.getViewTreeObserver();
+      ViewUtil.removeOnGlobalLayoutListener(liveObserver, this);
+      dispatchers.remove(observer);
+    }
+  }
+
+  /** A view waiting to be laid out. Doubles as its own timeout callback **/
+  static final class Waiter implements Runnable, View.OnAttachStateChangeListener {
+    ReadinessDispatcher dispatcher;
+    final View view;
+    final Runnable onReady;
+    @Nullable
+    final Runnable onTimeout;
+    boolean done;
+
+    Waiter(ReadinessDispatcher dispatcher, View view, Runnable onReady, @Nullable Runnable onTimeout) {
+      this.dispatcher = dispatcher;
+      this.view = view;
+      this.onReady = onReady;
+      this.onTimeout = onTimeout;
+    }
+
+    /** Stops waiting without invoking either callback **/
+    void cancel() {
+      dispatcher.remove(this);
+    }
+
+    @Override
+    public void run() {
+      giveUp();
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+      dispatcher.move(this);
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+      giveUp();
+    }
+
+    private void giveUp() {
+      if (done) {
+        return;
+      }
+
+      dispatcher.remove(this);
+      if (onTimeout != null) {
+        onTimeout.run();
+      }
+    }
+  }
+}
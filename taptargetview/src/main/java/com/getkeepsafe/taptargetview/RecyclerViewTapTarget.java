@@ -0,0 +1,162 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.annotation.IdRes;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Targets an item (or a child of an item) of a {@link RecyclerView} by adapter position.
+ * <p>
+ * If the item isn't bound yet, the recycler view is scrolled to it and the target waits for the
+ * item to be attached, via {@link RecyclerView.OnChildAttachStateChangeListener}, instead of
+ * polling layout passes. An item that is bound but only partly shown is scrolled fully into view.
+ *
+ * @see RecyclerViewTapTargets
+ */
+class RecyclerViewTapTarget extends ViewTapTarget {
+  static final long DEFAULT_READY_TIMEOUT = 1000;
+
+  private final RecyclerView recyclerView;
+  private final int adapterPosition;
+  @IdRes
+  private final int childId;
+
+  @Nullable
+  private View itemView;
+  @Nullable
+  private PendingItem pendingItem;
+
+  RecyclerViewTapTarget(RecyclerView recyclerView, int adapterPosition, @IdRes int childId,
+                        CharSequence title, @Nullable CharSequence description, @Nullable CharSequence buttonText) {
+    super(title, description, buttonText);
+    if (recyclerView == null) {
+      throw new IllegalArgumentException("Given null RecyclerView");
+    }
+
+    if (adapterPosition < 0) {
+      throw new IllegalArgumentException("Given invalid adapter position " + adapterPosition);
+    }
+
+    this.recyclerView = recyclerView;
+    this.adapterPosition = adapterPosition;
+    this.childId = childId;
+    this.readyTimeout = DEFAULT_READY_TIMEOUT;
+  }
+
+  @Override
+  View resolveView() {
+    if (itemView == null || childId == View.NO_ID) {
+      return itemView;
+    }
+
+    return itemView.findViewById(childId);
+  }
+
+  @Override
+  boolean canResolveEarly() {
+    // Resolving may scroll the list underneath the target that is currently showing
+    return false;
+  }
+
+  @Override
+  public void onReady(Runnable onReady, Runnable onUnavailable) {
+    if (pendingItem != null) {
+      // Already waiting for the item, don't scroll again or restart the timeout
+      pendingItem.onReady = onReady;
+      pendingItem.onUnavailable = onUnavailable;
+      return;
+    }
+
+    final RecyclerView.Adapter<?> adapter = recyclerView.getAdapter();
+    if (adapter != null && adapterPosition >= adapter.getItemCount()) {
+      onUnavailable.run();
+      return;
+    }
+
+    final RecyclerView.ViewHolder holder = recyclerView.findViewHolderForAdapterPosition(adapterPosition);
+    if (holder != null) {
+      // Does nothing if the item is fully shown already
+      final View itemView = holder.itemView;
+      recyclerView.requestChildRectangleOnScreen(itemView,
+          new Rect(0, 0, itemView.getWidth(), itemView.getHeight()), true);
+      onItemView(itemView, onReady, onUnavailable);
+      return;
+    }
+
+    pendingItem = new PendingItem(onReady, onUnavailable);
+    recyclerView.addOnChildAttachStateChangeListener(pendingItem);
+    if (readyTimeout > 0) {
+      recyclerView.postDelayed(pendingItem, readyTimeout);
+    }
+    recyclerView.scrollToPosition(adapterPosition);
+  }
+
+  void onItemView(View itemView, Runnable onReady, Runnable onUnavailable) {
+    this.itemView = itemView;
+    if (resolveView() == null) {
+      onUnavailable.run();
+      return;
+    }
+
+    super.onReady(onReady, onUnavailable);
+  }
+
+  void cancelPendingItem() {
+    if (pendingItem == null) {
+      return;
+    }
+
+    recyclerView.removeOnChildAttachStateChangeListener(pendingItem);
+    recyclerView.removeCallbacks(pendingItem);
+    pendingItem = null;
+  }
+
+  /** Waits for the item to be attached, and doubles as the timeout callback **/
+  private class PendingItem implements RecyclerView.OnChildAttachStateChangeListener, Runnable {
+    Runnable onReady;
+    Runnable onUnavailable;
+
+    PendingItem(Runnable onReady, Runnable onUnavailable) {
+      this.onReady = onReady;
+      this.onUnavailable = onUnavailable;
+    }
+
+    @Override
+    public void onChildViewAttachedToWindow(View view) {
+      if (recyclerView.getChildAdapterPosition(view) != adapterPosition) {
+        return;
+      }
+
+      cancelPendingItem();
+      onItemView(view, onReady, onUnavailable);
+    }
+
+    @Override
+    public void onChildViewDetachedFromWindow(View view) {
+    }
+
+    @Override
+    public void run() {
+      cancelPendingItem();
+      onUnavailable.run();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.view.View;
+
+import androidx.annotation.IdRes;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Provides {@link TapTarget}s for items of a {@link RecyclerView}.
+ * <p>
+ * The library only compiles against RecyclerView, so these live apart from {@link TapTarget} and
+ * are only loaded by apps that use them. Apps using them depend on
+ * {@code androidx.recyclerview:recyclerview} themselves.
+ */
+public final class RecyclerViewTapTargets {
+  private RecyclerViewTapTargets() {
+  }
+
+  /**
+   * Return a tap target for the item at the given adapter position. If the item is not currently
+   * shown, the recycler view will be scrolled to it once the target is about to be shown
+   */
+  public static TapTarget forItem(RecyclerView recyclerView, int adapterPosition, CharSequence title) {
+    return forItem(recyclerView, adapterPosition, title, null);
+  }
+
+  /**
+   * Return a tap target for the item at the given adapter position. If the item is not currently
+   * shown, the recycler view will be scrolled to it once the target is about to be shown
+   */
+  public static TapTarget forItem(RecyclerView recyclerView, int adapterPosition,
+                                  CharSequence title, @Nullable CharSequence description) {
+    return forItem(recyclerView, adapterPosition, View.NO_ID, title, description, null);
+  }
+
+  /**
+   * Return a tap target for the child with the given id within the item at the given adapter
+   * position, or the item itself if {@code childId} is {@link View#NO_ID}. If the item is not
+   * currently shown, the recycler view will be scrolled to it once the target is about to be shown
+   */
+  public static TapTarget forItem(RecyclerView recyclerView, int adapterPosition, @IdRes int childId,
+                                  CharSequence title, @Nullable CharSequence description,
+                                  @Nullable CharSequence buttonText) {
+    return new RecyclerViewTapTarget(recyclerView, adapterPosition, childId, title, description, buttonText);
+  }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bookkeeping of {@link TapTargetScheduler}: what waits to be shown in which order, what is
+ * shown, and when to stop polling for windows. Windows are only seen through {@link Windows}, so
+ * that the scheduling rules can be unit tested in plain Java.
+ */
+final class ScheduleQueue<T> {
+  // Polling is only a fallback, for windows that are focused but not laid out yet and for
+  // platforms without window focus listeners
+  static final int MAX_RETRIES = 50;
+
+  /** How the queue sees the windows of its items **/
+  interface Windows<T> {
+    /** Returns whether the item can't be shown anymore, e.g. as its activity is finishing **/
+    boolean isStale(T item);
+
+    /** Returns whether the item's window has focus and is laid out **/
+    boolean isReady(T item);
+
+    /** Returns whether the item's window has to be polled, as it won't tell when it is ready **/
+    boolean needsPolling(T item);
+
+    /** Called for a waiting item whose window isn't ready yet **/
+    void onWaiting(T item);
+
+    /** Called for an item that is dropped for being stale **/
+    void onDropped(T item);
+  }
+
+  private static final class Entry<T> {
+    final T item;
+    final int priority;
+
+    Entry(T item, int priority) {
+      this.item = item;
+      this.priority = priority;
+    }
+  }
+
+  // Highest priority first, in the order they were added within the same priority
+  private final List<Entry<T>> pending = new ArrayList<>();
+  @Nullable
+  private T current;
+  private boolean paused;
+  private int retries;
+  private boolean retry;
+
+  void add(T item, int priority) {
+    int index = pending.size();
+    while (index > 0 && pending.get(index - 1).priority < priority) {
+      --index;
+    }
+    pending.add(index, new Entry<>(item, priority));
+    retries = 0;
+  }
+
+  /** Removes the given item if it is waiting, and returns whether it was **/
+  boolean remove(T item) {
+    for (int i = 0; i < pending.size(); ++i) {
+      if (pending.get(i).item == item) {
+        pending.remove(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean contains(T item) {
+    for (int i = 0; i < pending.size(); ++i) {
+      if (pending.get(i).item == item) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  int size() {
+    return pending.size();
+  }
+
+  @Nullable
+  T current() {
+    return current;
+  }
+
+  void pause() {
+    paused = true;
+  }
+
+  void resume() {
+    paused = false;
+    retries = 0;
+  }
+
+  /** Starts polling over again, e.g. as a window gained focus **/
+  void resetRetries() {
+    retries = 0;
+  }
+
+  /** Returns whether {@link #next(Windows)} might show something **/
+  boolean canShow() {
+    return !paused && current == null && !pending.isEmpty();
+  }
+
+  /** Ends showing the given item, and returns whether it was the one shown **/
+  boolean end(T item) {
+    if (current != item) {
+      return false;
+    }
+
+    current = null;
+    retries = 0;
+    return true;
+  }
+
+  /** Forgets about the item being shown if it went away without ending **/
+  void dropStaleCurrent(Windows<T> windows) {
+    if (current != null && windows.isStale(current)) {
+      current = null;
+    }
+  }
+
+  /**
+   * Takes the item to show next: the first one, by priority, whose window is ready. Stale items
+   * are dropped on the way, items that aren't ready are passed over and keep waiting.
+   *
+   * @return the item to show, which is now the current one, or null if there is none
+   */
+  @Nullable
+  T next(Windows<T> windows) {
+    retry = false;
+    if (paused || current != null) {
+      return null;
+    }
+
+    boolean poll = false;
+    for (final Entry<T> entry : new ArrayList<>(pending)) {
+      final T item = entry.item;
+      if (windows.isStale(item)) {
+        pending.remove(entry);
+        windows.onDropped(item);
+        continue;
+      }
+
+      if (windows.isReady(item)) {
+        pending.remove(entry);
+        retries = 0;
+        current = item;
+        return item;
+      }
+
+      windows.onWaiting(item);
+      poll |= windows.needsPolling(item);
+    }
+
+    if (poll && retries < MAX_RETRIES) {
+      retries++;
+      retry = true;
+    }
+    return null;
+  }
+
+  /** Returns whether the last {@link #next(Windows)} wants to be retried after a short delay **/
+  boolean shouldRetry() {
+    return retry;
+  }
+}
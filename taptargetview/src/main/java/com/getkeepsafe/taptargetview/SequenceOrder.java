@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The order of the targets of a {@link TapTargetSequence} by their ids, along with the
+ * transitions between them. Only indices and ids are dealt with here, in plain Java, so that how a
+ * sequence moves between its targets can be unit tested.
+ */
+final class SequenceOrder {
+  private final List<Integer> ids = new ArrayList<>();
+  // Target id to the index of the first target with that id
+  private final Map<Integer, Integer> indices = new HashMap<>();
+  // Target id to the id of the target that follows it, when it was clicked or not
+  private final Map<Integer, Integer> clickedTransitions = new HashMap<>();
+  private final Map<Integer, Integer> notClickedTransitions = new HashMap<>();
+
+  void add(int id) {
+    if (id != -1 && !indices.containsKey(id)) {
+      indices.put(id, ids.size());
+    }
+    ids.add(id);
+  }
+
+  void transition(int fromId, boolean targetClicked, int toId) {
+    (targetClicked ? clickedTransitions : notClickedTransitions).put(fromId, toId);
+  }
+
+  /** Throws if a transition leads from or to a target that is not in the sequence **/
+  void checkTransitions() {
+    checkTransitions(clickedTransitions);
+    checkTransitions(notClickedTransitions);
+  }
+
+  private void checkTransitions(Map<Integer, Integer> transitions) {
+    for (final Map.Entry<Integer, Integer> transition : transitions.entrySet()) {
+      final int fromId = transition.getKey();
+      final int toId = transition.getValue();
+      if (!indices.containsKey(fromId)) {
+        throw new IllegalStateException("Transition from target " + fromId + " not in sequence");
+      }
+
+      if (toId != TapTargetSequence.FINISH && !indices.containsKey(toId)) {
+        throw new IllegalStateException("Transition from target " + fromId + " to target " + toId
+            + " not in sequence");
+      }
+    }
+  }
+
+  int size() {
+    return ids.size();
+  }
+
+  int idAt(int index) {
+    return ids.get(index);
+  }
+
+  /** Returns the index of the first target with the given id **/
+  int indexOf(int targetId) {
+    final Integer index = indices.get(targetId);
+    if (index == null) {
+      throw new IllegalStateException("Given target " + targetId + " not in sequence");
+    }
+
+    return index;
+  }
+
+  /** Returns the index of the target that follows the given one, which may be past the end **/
+  int nextIndex(int index, boolean targetClicked) {
+    if (index >= 0 && index < ids.size()) {
+      final int id = ids.get(index);
+      final Integer toId = id != -1
+          ? (targetClicked ? clickedTransitions : notClickedTransitions).get(id) : null;
+      if (toId != null && toId == TapTargetSequence.FINISH) {
+        return ids.size();
+      } else if (toId != null) {
+        return indexOf(toId);
+      }
+    }
+
+    return index + 1;
+  }
+
+  /**
+   * Returns the given index, or the first one following it that has a target which was not shown
+   * before if a registry is given
+   */
+  int skipShown(int index, @Nullable ShownTargetRegistry registry) {
+    if (registry == null) {
+      return index;
+    }
+
+    for (int steps = 0; index < ids.size() && steps < ids.size(); ++steps) {
+      if (!registry.isShown(ids.get(index))) {
+        return index;
+      }
+
+      // Move on as if it was clicked
+      index = nextIndex(index, true);
+    }
+
+    return ids.size();
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+import android.util.SparseArray;
+import androidx.annotation.Nullable;
+import androidx.core.os.ConfigurationCompat;
+
+import java.util.Arrays;
+
+/**
+ * The geometry and text layouts of each step of a {@link TapTargetSequence}, recorded the first
+ * time the step is shown and reused whenever it is shown again under the same configuration with
+ * its target at the same place.
+ * <p>
+ * Plans are kept in memory for as long as the process lives, they are not persisted across
+ * launches. They are keyed by the sequence's plan key along with everything that affects the
+ * outcome: screen size, density, font scale, locale and night mode.
+ */
+final class SequencePlan {
+  private static final LruCache<String, SequencePlan> PLANS = new LruCache<>(8);
+
+  private final SparseArray<Step> steps = new SparseArray<>();
+
+  static SequencePlan of(String key, Context context) {
+    final String planKey = key + '|' + configurationKey(context);
+    SequencePlan plan = PLANS.get(planKey);
+    if (plan == null) {
+      plan = new SequencePlan();
+      PLANS.put(planKey, plan);
+    }
+
+    return plan;
+  }
+
+  private static String configurationKey(Context context) {
+    final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+    final Configuration configuration = context.getResources().getConfiguration();
+    return metrics.widthPixels + "x" + metrics.heightPixels
+        + '|' + metrics.densityDpi
+        + '|' + configuration.fontScale
+        + '|' + ConfigurationCompat.getLocales(configuration).get(0)
+        + '|' + (configuration.uiMode & Configuration.UI_MODE_NIGHT_MASK);
+  }
+
+  /** Returns the step at the given index of the sequence **/
+  Step step(int index) {
+    Step step = steps.get(index);
+    if (step == null) {
+      step = new Step();
+      steps.put(index, step);
+    }
+
+    return step;
+  }
+
+  /** A single step, which is recorded once and never changes afterwards **/
+  static final class Step {
+    private boolean recorded;
+    private int textWidth;
+    private int viewWidth;
+    private int viewHeight;
+    private int topBoundary;
+    private int bottomBoundary;
+    private final Rect targetBounds = new Rect();
+    private final Rect textBounds = new Rect();
+    private final Rect buttonBounds = new Rect();
+    private final int[] outerCircleCenter = new int[2];
+    private int outerCircleRadius;
+    @Nullable
+    private StaticLayout titleLayout;
+    @Nullable
+    private StaticLayout descriptionLayout;
+    @Nullable
+    private StaticLayout buttonTextLayout;
+    @Nullable
+    private TextStyle textStyle;
+
+    /**
+     * Hands the recorded text layouts, along with their paints, over to the given view, if its
+     * target has the same text with the same styling
+     */
+    boolean adoptText(TapTargetView view, int textWidth) {
+      if (!recorded || textWidth != this.textWidth || titleLayout == null
+          || !TextUtils.equals(titleLayout.getText(), view.title)
+          || !sameText(descriptionLayout, view.description)
+          || !sameText(buttonTextLayout, view.buttonText)
+          || textStyle == null || !textStyle.equals(TextStyle.of(view))) {
+        return false;
+      }
+
+      view.titleLayout = titleLayout;
+      view.titlePaint = (TextPaint) titleLayout.getPaint();
+      view.descriptionLayout = descriptionLayout;
+      if (descriptionLayout != null) {
+        view.descriptionPaint = (TextPaint) descriptionLayout.getPaint();
+      }
+      view.buttonTextLayout = buttonTextLayout;
+      if (buttonTextLayout != null) {
+        view.buttonTextPaint = (TextPaint) buttonTextLayout.getPaint();
+      }
+      view.laidOutTextWidth = textWidth;
+      view.textPaintsShared = true;
+      return true;
+    }
+
+    private static boolean sameText(@Nullable StaticLayout layout, @Nullable CharSequence text) {
+      return layout == null ? text == null : TextUtils.equals(layout.getText(), text);
+    }
+
+    /** Hands the recorded geometry over to the given view, if its target has not moved since **/
+    boolean adoptGeometry(TapTargetView view) {
+      if (!recorded || view.laidOutTextWidth != textWidth
+          || view.getWidth() != viewWidth || view.getHeight() != viewHeight
+          || view.topBoundary != topBoundary || view.bottomBoundary != bottomBoundary
+          || !view.targetBounds.equals(targetBounds)) {
+        return false;
+      }
+
+      view.textBounds = new Rect(textBounds);
+      view.buttonBounds = new Rect(buttonBounds);
+      view.outerCircleCenter = new int[] {outerCircleCenter[0], outerCircleCenter[1]};
+      view.calculatedOuterCircleRadius = outerCircleRadius;
+      return true;
+    }
+
+    /** Records what the given view has just calculated, unless this step was recorded before **/
+    void record(TapTargetView view) {
+      if (recorded || view.titleLayout == null || view.outerCircleCenter == null
+          || view.customElement != null) {
+        // Custom elements are measured by the app, so we can't tell when they change
+        return;
+      }
+
+      recorded = true;
+      textWidth = view.laidOutTextWidth;
+      viewWidth = view.getWidth();
+      viewHeight = view.getHeight();
+      topBoundary = view.topBoundary;
+      bottomBoundary = view.bottomBoundary;
+      targetBounds.set(view.targetBounds);
+      textBounds.set(view.textBounds);
+      buttonBounds.set(view.buttonBounds);
+      outerCircleCenter[0] = view.outerCircleCenter[0];
+      outerCircleCenter[1] = view.outerCircleCenter[1];
+      outerCircleRadius = view.calculatedOuterCircleRadius;
+
+      // Keep the layouts the view already built. Their paints are shared from now on, so the view
+      // gets paints of its own before it configures them for another target
+      titleLayout = view.titleLayout;
+      descriptionLayout = view.descriptionLayout;
+      buttonTextLayout = view.buttonTextLayout;
+      textStyle = TextStyle.of(view);
+      view.textPaintsShared = true;
+    }
+  }
+
+  /**
+   * How the text of a view's target is styled. This is taken from the target rather than from the
+   * view's paints, whose alpha changes as the text fades in and out
+   */
+  static final class TextStyle {
+    private final float[] sizes = new float[3];
+    private final int[] colors = new int[3];
+    private final Typeface[] typefaces = new Typeface[3];
+
+    static TextStyle of(TapTargetView view) {
+      final TextPaint titlePaint = new TextPaint();
+      final TextPaint descriptionPaint = new TextPaint();
+      final TextPaint buttonTextPaint = new TextPaint();
+      TapTargetView.applyTextOptions(view.getContext(), view.target, view.isDark,
+          titlePaint, descriptionPaint, buttonTextPaint);
+
+      final TextStyle style = new TextStyle();
+      style.set(0, titlePaint);
+      style.set(1, descriptionPaint);
+      style.set(2, buttonTextPaint);
+      return style;
+    }
+
+    private void set(int index, TextPaint paint) {
+      sizes[index] = paint.getTextSize();
+      colors[index] = paint.getColor();
+      typefaces[index] = paint.getTypeface();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof TextStyle)) {
+        return false;
+      }
+
+      final TextStyle other = (TextStyle) o;
+      return Arrays.equals(sizes, other.sizes) && Arrays.equals(colors, other.colors)
+          && Arrays.equals(typefaces, other.typefaces);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * Arrays.hashCode(sizes) + Arrays.hashCode(colors)) + Arrays.hashCode(typefaces);
+    }
+  }
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Remembers which {@link TapTarget}s have been shown, by their {@link TapTarget#id()}, across
+ * app restarts.
+ * <p>
+ * The registry is a bitset in a memory-mapped file, so checking a target is a single memory read
+ * without any locking or disk access. Marking targets is batched, the file is synced to disk
+ * shortly after the last change or when {@link #flush()} is called.
+ * <p>
+ * The file is opened, mapped, grown and cleared on a background thread, {@link #get(Context)},
+ * {@link #markShown(int)} and {@link #reset()} don't touch the disk beyond setting a bit. Until it is loaded, no target counts as shown, see {@link #whenLoaded(Runnable)}. Targets
+ * marked before then are kept and written to the file once it is loaded.
+ * <p>
+ * Only ids from 0 (inclusive) to {@link #MAX_ID} (exclusive) can be tracked.
+ */
+public final class ShownTargetRegistry {
+  /** The largest id that can be tracked, exclusive **/
+  public static final int MAX_ID = 1 << 20;
+
+  private static final String TAG = "ShownTargetRegistry";
+  private static final String FILE_NAME = "com.getkeepsafe.taptargetview.shown";
+  private static final int PAGE_SIZE = 4096;
+  private static final long FLUSH_DELAY = 1000;
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+  private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+  // Opens, maps, grows and clears the file, and syncs it to disk
+  private static final Executor IO_EXECUTOR = BackgroundExecutor.INSTANCE;
+
+  @Nullable
+  private static ShownTargetRegistry instance;
+
+  @Nullable
+  private FileChannel channel;
+  @Nullable
+  private MappedByteBuffer mapped;
+  // The part of the file that is up to date, empty until it is loaded or while it is cleared
+  private volatile ByteBuffer bits = EMPTY;
+  // Marks that don't fit into bits yet, kept in memory until the file is grown to hold them
+  @Nullable
+  private volatile ByteBuffer overflow;
+  // Counts changes to overflow, so syncing can tell whether it raced with one
+  private int overflowVersion;
+  private volatile boolean loaded;
+  private boolean cleared;
+  private boolean syncScheduled;
+  private boolean flushScheduled;
+  // Keeps syncs from running concurrently, only ever held off the main thread
+  private final Object syncLock = new Object();
+  // Only accessed from the main thread
+  private final ArrayList<Runnable> loadedCallbacks = new ArrayList<>();
+
+  /** Returns the registry of this app, which starts loading in the background on first use **/
+  public static synchronized ShownTargetRegistry get(Context context) {
+    if (instance == null) {
+      final ShownTargetRegistry registry = new ShownTargetRegistry();
+      final Context applicationContext = context.getApplicationContext();
+      IO_EXECUTOR.execute(() -> registry.load(
+          new File(ContextCompat.getNoBackupFilesDir(applicationContext), FILE_NAME)));
+      instance = registry;
+    }
+
+    return instance;
+  }
+
+  ShownTargetRegistry() {
+  }
+
+  @WorkerThread
+  void load(File file) {
+    FileChannel channel = null;
+    MappedByteBuffer mapped;
+    try {
+      channel = new RandomAccessFile(file, "rw").getChannel();
+      mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, roundUp(Math.max(1, channel.size())));
+    } catch (IOException e) {
+      // Keep track in memory only, so targets may be shown again after a restart
+      Log.w(TAG, "Can't open " + file + ", shown targets won't be remembered", e);
+      close(channel);
+      channel = null;
+      mapped = null;
+    }
+
+    synchronized (this) {
+      this.channel = channel;
+      this.mapped = mapped;
+      loaded = true;
+    }
+    // Carries over everything that happened while the file was loading
+    sync();
+    MAIN_HANDLER.post(this::dispatchLoaded);
+  }
+
+  /**
+   * Brings the file up to date with the marks and resets that couldn't be applied to it right
+   * away, growing and clearing it as needed. Everything that touches more than a single bit of
+   * the file happens here, off the main thread, and outside of the lock the main thread takes.
+   */
+  @WorkerThread
+  private void sync() {
+    synchronized (syncLock) {
+      final ByteBuffer pending;
+      final boolean clear;
+      final int version;
+      final FileChannel channel;
+      final MappedByteBuffer current;
+      synchronized (this) {
+        syncScheduled = false;
+        channel = this.channel;
+        if (!loaded || channel == null) {
+          // Without a file, marks are only ever kept in overflow
+          return;
+        }
+        pending = overflow;
+        clear = cleared;
+        version = overflowVersion;
+        current = mapped;
+        if (pending == null && !clear && bits == current) {
+          return;
+        }
+      }
+
+      MappedByteBuffer target = current;
+      if (pending != null && pending.capacity() > current.capacity()) {
+        try {
+          // The file grows along with the mapping, which also sees everything marked so far
+          target = channel.map(FileChannel.MapMode.READ_WRITE, 0, pending.capacity());
+        } catch (IOException e) {
+          // The marks stay in memory, the next change or flush tries again
+          Log.w(TAG, "Can't grow the registry to " + pending.capacity() + " bytes", e);
+          return;
+        }
+      }
+
+      if (clear) {
+        for (int i = 0; i < target.capacity(); ++i) {
+          target.put(i, (byte) 0);
+        }
+      }
+      if (pending != null) {
+        merge(pending, target);
+      }
+
+      synchronized (this) {
+        if (overflowVersion != version) {
+          // Marked or reset in the meantime, go over it again
+          scheduleSync();
+          return;
+        }
+        mapped = target;
+        bits = target;
+        overflow = null;
+        cleared = false;
+        scheduleFlush();
+      }
+    }
+  }
+
+  private static void merge(ByteBuffer from, ByteBuffer into) {
+    for (int i = 0; i < from.capacity(); ++i) {
+      final byte marks = from.get(i);
+      if (marks != 0) {
+        into.put(i, (byte) (into.get(i) | marks));
+      }
+    }
+  }
+
+  /** Returns whether the file has been loaded, and {@link #isShown(int)} knows about earlier runs **/
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /** Runs the given runnable on the main thread once loaded, right away if it already is **/
+  @UiThread
+  public void whenLoaded(Runnable runnable) {
+    if (loaded && loadedCallbacks.isEmpty()) {
+      runnable.run();
+      return;
+    }
+
+    loadedCallbacks.add(runnable);
+  }
+
+  private void dispatchLoaded() {
+    final ArrayList<Runnable> callbacks = new ArrayList<>(loadedCallbacks);
+    loadedCallbacks.clear();
+    for (final Runnable callback : callbacks) {
+      callback.run();
+    }
+  }
+
+  /** Returns whether the target with the given id has been marked as shown **/
+  public boolean isShown(int id) {
+    if (id < 0) {
+      return false;
+    }
+
+    return isSet(bits, id) || isSet(overflow, id);
+  }
+
+  /** Marks the target with the given id as shown **/
+  public synchronized void markShown(int id) {
+    if (!isTrackable(id)) throw new IllegalArgumentException("Given untrackable id " + id);
+    if (isShown(id)) {
+      return;
+    }
+
+    final int index = id >>> 3;
+    final ByteBuffer bits = this.bits;
+    if (index < bits.capacity()) {
+      bits.put(index, (byte) (bits.get(index) | (1 << (id & 7))));
+      scheduleFlush();
+      return;
+    }
+
+    // Growing the file maps it anew, which is left to the background
+    ByteBuffer overflow = this.overflow;
+    if (overflow == null || index >= overflow.capacity()) {
+      overflow = copyOf(overflow, roundUp(index + 1));
+    }
+    overflow.put(index, (byte) (overflow.get(index) | (1 << (id & 7))));
+    this.overflow = overflow;
+    ++overflowVersion;
+    scheduleSync();
+  }
+
+  /** Forgets about all targets that were marked as shown **/
+  public synchronized void reset() {
+    // Nothing counts as shown until the file is cleared in the background
+    bits = EMPTY;
+    overflow = null;
+    cleared = true;
+    ++overflowVersion;
+    scheduleSync();
+  }
+
+  /** Syncs all changes to disk right away. This blocks on disk access **/
+  @WorkerThread
+  public void flush() {
+    sync();
+    final MappedByteBuffer mapped;
+    synchronized (this) {
+      flushScheduled = false;
+      mapped = this.mapped;
+    }
+
+    if (mapped != null) {
+      mapped.force();
+    }
+  }
+
+  static boolean isTrackable(int id) {
+    return id >= 0 && id < MAX_ID;
+  }
+
+  private void scheduleFlush() {
+    if (flushScheduled || channel == null) {
+      return;
+    }
+
+    flushScheduled = true;
+    MAIN_HANDLER.postDelayed(() -> IO_EXECUTOR.execute(this::flush), FLUSH_DELAY);
+  }
+
+  private void scheduleSync() {
+    if (syncScheduled || !loaded || channel == null) {
+      // Loading syncs once it is done, and without a file there is nothing to sync
+      return;
+    }
+
+    syncScheduled = true;
+    IO_EXECUTOR.execute(this::sync);
+  }
+
+  private static boolean isSet(@Nullable ByteBuffer bits, int id) {
+    final int index = id >>> 3;
+    return bits != null && index < bits.capacity() && (bits.get(index) & (1 << (id & 7))) != 0;
+  }
+
+  private static ByteBuffer copyOf(@Nullable ByteBuffer bits, int capacity) {
+    final ByteBuffer copy = ByteBuffer.allocate(capacity);
+    if (bits != null) {
+      for (int i = 0; i < bits.capacity(); ++i) {
+        copy.put(i, bits.get(i));
+      }
+    }
+    return copy;
+  }
+
+  private static int roundUp(long size) {
+    return (int) ((size + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE);
+  }
+
+  private static void close(@Nullable FileChannel channel) {
+    if (channel == null) {
+      return;
+    }
+
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // Nothing we can do about it
+    }
+  }
+}
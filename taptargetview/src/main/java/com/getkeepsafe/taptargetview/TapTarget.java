@@ -38,6 +38,8 @@ import android.view.View;
  * This class can be extended to support various target types.
  *
  * @see ViewTapTarget ViewTapTarget for targeting standard Android views
+ * @see TapTargetLocator TapTargetLocator for targeting views that are located when shown
+ * @see RecyclerViewTapTargets RecyclerViewTapTargets for targeting items of a RecyclerView
  */
 public class TapTarget {
   final CharSequence title;
@@ -105,19 +107,40 @@ public class TapTarget {
   private int buttonVerticalPadding = 6;
   private int buttonHorizontalPadding = 16;
   int id = -1;
+  long readyTimeout = 0;
+  long showDelay = 250;
+  boolean startExpanded = false;
+  boolean trackTarget = false;
+
+  @Nullable
+  BoundsSupplier boundsSupplier;
+
+  // Set by a sequence with a plan, see TapTargetSequence#plan(String)
+  @Nullable
+  SequencePlan.Step planStep;
 
   boolean drawShadow = false;
   boolean cancelable = true;
   boolean tintTarget = true;
   boolean transparentTarget = false;
+  boolean passThrough = false;
   float descriptionTextAlpha = 0.54f;
 
   @Nullable
-  TapTargetView.ICustomElement customElement;
+  TapTargetView.CustomElement customElement;
 
   public TapTarget customElement(
     TapTargetView.ICustomElement customElement
   ) {
+    this.customElement = customElement != null ? new LegacyCustomElement(customElement) : null;
+    return this;
+  }
+
+  /**
+   * Specify an element to draw below the button, which may report changes to its content or size
+   * while shown
+   */
+  public TapTarget customElement(@Nullable TapTargetView.CustomElement customElement) {
     this.customElement = customElement;
     return this;
   }
@@ -218,6 +241,38 @@ public class TapTarget {
     return new ViewTapTarget(view, title, description, buttonText);
   }
 
+  /**
+   * Return a tap target for the view found by the given locator. The locator is only invoked
+   * right before the target is shown
+   *
+   * @see ViewIndex
+   */
+  public static TapTarget forLocator(TapTargetLocator locator, CharSequence title) {
+    return forLocator(locator, title, null, null);
+  }
+
+  /**
+   * Return a tap target for the view found by the given locator. The locator is only invoked
+   * right before the target is shown
+   *
+   * @see ViewIndex
+   */
+  public static TapTarget forLocator(TapTargetLocator locator, CharSequence title,
+                                     @Nullable CharSequence description) {
+    return forLocator(locator, title, description, null);
+  }
+
+  /**
+   * Return a tap target for the view found by the given locator. The locator is only invoked
+   * right before the target is shown
+   *
+   * @see ViewIndex
+   */
+  public static TapTarget forLocator(TapTargetLocator locator, CharSequence title,
+                                     @Nullable CharSequence description, @Nullable CharSequence buttonText) {
+    return new LocatorTapTarget(locator, title, description, buttonText);
+  }
+
   /** Return a tap target for the specified bounds **/
   public static TapTarget forBounds(Rect bounds, CharSequence title) {
     return forBounds(bounds, title, null);
@@ -228,6 +283,27 @@ public class TapTarget {
     return new TapTarget(bounds, title, description, null);
   }
 
+  /**
+   * Return a tap target for bounds that may change while it is shown. The target follows them,
+   * see {@link #trackTarget(boolean)}
+   */
+  public static TapTarget forBounds(BoundsSupplier supplier, CharSequence title, @Nullable CharSequence description) {
+    if (supplier == null) {
+      throw new IllegalArgumentException("Cannot pass null supplier");
+    }
+
+    final TapTarget target = new TapTarget(new Rect(), title, description, null);
+    target.boundsSupplier = supplier;
+    target.trackTarget = true;
+    return target;
+  }
+
+  /** Supplies the current bounds of a target, in screen coordinates **/
+  public interface BoundsSupplier {
+    /** Writes the current bounds into {@code outBounds}. Called on every frame while tracking **/
+    void getBounds(Rect outBounds);
+  }
+
   protected TapTarget(Rect bounds, CharSequence title, @Nullable CharSequence description, @Nullable CharSequence buttonText) {
     this(title, description, buttonText);
     if (bounds == null) {
@@ -253,6 +329,17 @@ public class TapTarget {
     return this;
   }
 
+  /**
+   * Specify whether taps on the target should reach the view underneath it as they happen. The
+   * view handles the tap as it normally would, in addition to
+   * {@link TapTargetView.Listener#onTargetClick(TapTargetView)} being called. Only applies to
+   * targets for a view
+   */
+  public TapTarget passThrough(boolean passThrough) {
+    this.passThrough = passThrough;
+    return this;
+  }
+
   /** Specify the color resource for the outer circle **/
   public TapTarget outerCircleColor(@ColorRes int color) {
     this.outerCircleColorRes = color;
@@ -594,6 +681,43 @@ public class TapTarget {
     return this;
   }
 
+  /**
+   * Specify how long to wait, in milliseconds, for the target to become ready before giving up on
+   * it. A value of 0 waits indefinitely
+   *
+   * @see TapTargetView.Listener#onTargetUnavailable(TapTargetView)
+   */
+  public TapTarget readyTimeout(long millis) {
+    if (millis < 0) throw new IllegalArgumentException("Given negative timeout");
+    this.readyTimeout = millis;
+    return this;
+  }
+
+  /** Specify how long to wait, in milliseconds, before expanding the target once it is ready **/
+  public TapTarget showDelay(long millis) {
+    if (millis < 0) throw new IllegalArgumentException("Given negative delay");
+    this.showDelay = millis;
+    return this;
+  }
+
+  /**
+   * Specify whether to skip the expand animation, so that the very first frame already shows the
+   * target fully expanded
+   */
+  public TapTarget startExpanded(boolean status) {
+    this.startExpanded = status;
+    return this;
+  }
+
+  /**
+   * Specify whether the target should follow its view while shown, e.g. as it scrolls or
+   * animates. The overlay is moved along with it, its text is not laid out again
+   */
+  public TapTarget trackTarget(boolean status) {
+    this.trackTarget = status;
+    return this;
+  }
+
   /** Return the id associated with this tap target **/
   public int id() {
     return id;
@@ -607,6 +731,45 @@ public class TapTarget {
     runnable.run();
   }
 
+  /**
+   * Same as {@link #onReady(Runnable)}, for targets that may never become ready. If the target
+   * cannot be resolved within its {@link #readyTimeout(long)}, {@code onUnavailable} is invoked
+   * instead of {@code onReady}.
+   * <p>
+   * By default this defers to {@link #onReady(Runnable)}.
+   */
+  public void onReady(Runnable onReady, Runnable onUnavailable) {
+    onReady(onReady);
+  }
+
+  /**
+   * Whether {@link #onReady(Runnable, Runnable)} may be called while a previous target is still
+   * showing, to get this one ready ahead of time. Targets that visibly change the screen to become
+   * ready, e.g. by scrolling, should return false.
+   */
+  boolean canResolveEarly() {
+    return true;
+  }
+
+  /**
+   * Writes the current bounds of a tracked target into {@code outBounds}, in screen coordinates.
+   * Returns false if they can't be determined right now
+   */
+  boolean currentBounds(Rect outBounds) {
+    if (boundsSupplier == null) {
+      return false;
+    }
+
+    boundsSupplier.getBounds(outBounds);
+    return true;
+  }
+
+  /** The view this target was last resolved to, if it targets one **/
+  @Nullable
+  View resolvedView() {
+    return null;
+  }
+
   /**
    * Returns the target bounds. Throws an exception if they are not set
    * (target may not be ready)
@@ -614,6 +777,9 @@ public class TapTarget {
    * This will only be called internally when {@link #onReady(Runnable)} invokes its runnable
    */
   public Rect bounds() {
+    if (boundsSupplier != null) {
+      boundsSupplier.getBounds(bounds);
+    }
     if (bounds == null) {
       throw new IllegalStateException("Requesting bounds that are not set! Make sure your target is ready");
     }
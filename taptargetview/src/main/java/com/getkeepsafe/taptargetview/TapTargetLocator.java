@@ -0,0 +1,34 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import androidx.annotation.Nullable;
+import android.view.View;
+
+/**
+ * Locates the view that a {@link TapTarget} should point at.
+ * <p>
+ * A locator is only invoked right before its target is shown, so targets can be created before
+ * the views they point at exist.
+ *
+ * @see TapTarget#forLocator(TapTargetLocator, CharSequence)
+ * @see ViewIndex ViewIndex for locators that share a single lookup of a container
+ */
+public interface TapTargetLocator {
+  /** Returns the view to target, or null if it could not be found **/
+  @Nullable
+  View locate();
+}
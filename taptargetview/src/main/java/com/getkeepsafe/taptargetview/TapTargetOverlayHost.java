@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.annotation.SuppressLint;
+import android.app.Activity;
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import androidx.annotation.Nullable;
+import androidx.core.view.ViewCompat;
+
+/**
+ * A container for {@link TapTargetView}s that is attached to an activity's decor view once, up
+ * front, so that showing and dismissing tap targets does not change the activity's view hierarchy.
+ * <p>
+ * Adding or removing a tap target normally requests a layout of the whole window, which measures
+ * the activity's entire content again. The host spans the whole window no matter what it holds,
+ * so it lays out its own children instead and leaves the rest of the window alone. While empty,
+ * it neither draws nor takes any touches.
+ * <p>
+ * Once installed, {@link TapTargetView#showFor(Activity, TapTarget, TapTargetView.Listener)}
+ * uses the host automatically.
+ */
+@SuppressLint("ViewConstructor")
+public final class TapTargetOverlayHost extends ViewGroup {
+  private boolean layoutScheduled;
+
+  private final Runnable layoutChildren = new Runnable() {
+    @Override
+    public void run() {
+      layoutScheduled = false;
+      layoutChildren();
+    }
+  };
+
+  /** Installs a host into the given activity's window, if it doesn't have one yet **/
+  public static TapTargetOverlayHost install(Activity activity) {
+    if (activity == null) throw new IllegalArgumentException("Activity is null");
+
+    final ViewGroup decor = (ViewGroup) activity.getWindow().getDecorView();
+    TapTargetOverlayHost host = find(decor);
+    if (host == null) {
+      host = new TapTargetOverlayHost(activity);
+      decor.addView(host, new ViewGroup.LayoutParams(
+          ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+    }
+
+    return host;
+  }
+
+  /** Returns the host installed into the given decor view, if any **/
+  @Nullable
+  static TapTargetOverlayHost find(ViewGroup decor) {
+    final View host = decor.findViewById(R.id.tap_target_overlay_host);
+    return host instanceof TapTargetOverlayHost ? (TapTargetOverlayHost) host : null;
+  }
+
+  private TapTargetOverlayHost(Context context) {
+    super(context);
+    setId(R.id.tap_target_overlay_host);
+    // Children are placed on top of the whole window, nothing to clip or save for us
+    setClipChildren(false);
+    setSaveEnabled(false);
+  }
+
+  @Override
+  public void requestLayout() {
+    if (!ViewCompat.isAttachedToWindow(this) || !ViewCompat.isLaidOut(this)) {
+      super.requestLayout();
+      return;
+    }
+
+    // Our own size never depends on our children, so don't bother the rest of the window
+    if (!layoutScheduled) {
+      layoutScheduled = true;
+      ViewCompat.postOnAnimation(this, layoutChildren);
+    }
+  }
+
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    setMeasuredDimension(getDefaultSize(0, widthMeasureSpec), getDefaultSize(0, heightMeasureSpec));
+    measureChildren();
+  }
+
+  @Override
+  protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+    for (int i = 0; i < getChildCount(); ++i) {
+      final View child = getChildAt(i);
+      child.layout(0, 0, child.getMeasuredWidth(), child.getMeasuredHeight());
+    }
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+    removeCallbacks(layoutChildren);
+    layoutScheduled = false;
+  }
+
+  private void measureChildren() {
+    final int widthSpec = MeasureSpec.makeMeasureSpec(getMeasuredWidth(), MeasureSpec.EXACTLY);
+    final int heightSpec = MeasureSpec.makeMeasureSpec(getMeasuredHeight(), MeasureSpec.EXACTLY);
+    for (int i = 0; i < getChildCount(); ++i) {
+      getChildAt(i).measure(widthSpec, heightSpec);
+    }
+  }
+
+  /** Lays out our children the way the window would have, telling tap targets they are ready **/
+  void layoutChildren() {
+    if (!ViewCompat.isAttachedToWindow(this)) {
+      return;
+    }
+
+    measureChildren();
+    onLayout(false, getLeft(), getTop(), getRight(), getBottom());
+    for (int i = 0; i < getChildCount(); ++i) {
+      final View child = getChildAt(i);
+      if (child instanceof TapTargetView) {
+        // No global layout will follow, as the window was never asked to lay out
+        ((TapTargetView) child).onHostLayout();
+      }
+    }
+    invalidate();
+  }
+}
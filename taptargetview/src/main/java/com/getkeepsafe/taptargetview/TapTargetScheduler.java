@@ -0,0 +1,400 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.UiThread;
+import androidx.core.view.ViewCompat;
+
+/**
+ * Shows tap targets and sequences app-wide, one at a time, in order of priority.
+ * <p>
+ * Scheduled requests are only shown once the main thread is idle and their window has focus and
+ * is laid out, so they don't compete with starting up or with window transitions for frames.
+ * While a request waits for its window, requests after it whose windows are ready go ahead.
+ * Requests for activities that are finishing by then, or whose window went away, are dropped.
+ * For transitions that go on after the window gained focus, such as activity enter transitions,
+ * {@link #pause()} the scheduler until they are done, e.g. until
+ * {@code Activity#onEnterAnimationComplete()}.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+@UiThread
+public final class TapTargetScheduler {
+  private static final long RETRY_DELAY = 100;
+
+  @Nullable
+  private static TapTargetScheduler instance;
+
+  final ScheduleQueue<Request> queue = new ScheduleQueue<>();
+  private boolean idleScheduled;
+
+  private final ScheduleQueue.Windows<Request> windows = new ScheduleQueue.Windows<Request>() {
+    @Override
+    public boolean isStale(Request request) {
+      return request.isStale();
+    }
+
+    @Override
+    public boolean isReady(Request request) {
+      final View decor = request.decorView();
+      return decor.hasWindowFocus() && ViewCompat.isLaidOut(decor);
+    }
+
+    @Override
+    public boolean needsPolling(Request request) {
+      return request.decorView().hasWindowFocus() || Build.VERSION.SDK_INT < 18;
+    }
+
+    @Override
+    public void onWaiting(Request request) {
+      // Still starting up, in a transition or in the background. Wait for it to gain focus
+      request.watch(request.decorView());
+    }
+
+    @Override
+    public void onDropped(Request request) {
+      request.unwatch();
+    }
+  };
+
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final Runnable retry = this::scheduleNext;
+  private final MessageQueue.IdleHandler idleHandler = () -> {
+    idleScheduled = false;
+    showNext();
+    return false;
+  };
+
+  /** Returns the scheduler of this app **/
+  public static TapTargetScheduler get() {
+    if (instance == null) {
+      instance = new TapTargetScheduler();
+    }
+
+    return instance;
+  }
+
+  private TapTargetScheduler() {
+  }
+
+  /**
+   * Schedules the given target to be shown in the given activity. Requests with a higher priority
+   * are shown first, requests with the same priority in the order they were scheduled.
+   */
+  public Request schedule(Activity activity, TapTarget target, @Nullable TapTargetView.Listener listener,
+                          int priority) {
+    if (activity == null) throw new IllegalArgumentException("Activity is null");
+    if (target == null) throw new IllegalArgumentException("Target cannot be null");
+
+    return enqueue(new Request(this, activity, target, listener, null), priority);
+  }
+
+  /** Schedules the given sequence to be started, see {@link #schedule(Activity, TapTarget, TapTargetView.Listener, int)} **/
+  public Request schedule(TapTargetSequence sequence, int priority) {
+    if (sequence == null) throw new IllegalArgumentException("Given null sequence");
+
+    return enqueue(new Request(this, null, null, null, sequence), priority);
+  }
+
+  /** Holds off showing anything new until {@link #resume()} is called **/
+  public void pause() {
+    queue.pause();
+  }
+
+  /** Continues showing what was scheduled, see {@link #pause()} **/
+  public void resume() {
+    queue.resume();
+    scheduleNext();
+  }
+
+  /** Returns the number of requests waiting to be shown **/
+  public int pendingCount() {
+    return queue.size();
+  }
+
+  private Request enqueue(Request request, int priority) {
+    queue.add(request, priority);
+    scheduleNext();
+    return request;
+  }
+
+  void scheduleNext() {
+    handler.removeCallbacks(retry);
+    // Its screen may have gone away without telling us
+    queue.dropStaleCurrent(windows);
+
+    if (!queue.canShow() || idleScheduled) {
+      return;
+    }
+
+    idleScheduled = true;
+    Looper.myQueue().addIdleHandler(idleHandler);
+  }
+
+  private void showNext() {
+    final Request request = queue.next(windows);
+    if (request != null) {
+      request.unwatch();
+      request.show();
+    } else if (queue.shouldRetry()) {
+      handler.removeCallbacks(retry);
+      handler.postDelayed(retry, RETRY_DELAY);
+    }
+  }
+
+  void remove(Request request) {
+    queue.remove(request);
+    request.unwatch();
+  }
+
+  void onEnd(Request request) {
+    if (queue.end(request)) {
+      scheduleNext();
+    }
+  }
+
+  /** A scheduled target or sequence **/
+  public static final class Request {
+    final TapTargetScheduler scheduler;
+    @Nullable
+    final Activity activity;
+    @Nullable
+    final TapTarget target;
+    @Nullable
+    final TapTargetView.Listener listener;
+    @Nullable
+    final TapTargetSequence sequence;
+    @Nullable
+    TapTargetView view;
+    @Nullable
+    private DecorWatcher watcher;
+
+    Request(TapTargetScheduler scheduler, @Nullable Activity activity, @Nullable TapTarget target,
+            @Nullable TapTargetView.Listener listener, @Nullable TapTargetSequence sequence) {
+      this.scheduler = scheduler;
+      this.activity = activity;
+      this.target = target;
+      this.listener = listener;
+      this.sequence = sequence;
+    }
+
+    /** Returns whether this request is still waiting to be shown **/
+    public boolean isPending() {
+      return scheduler.queue.contains(this);
+    }
+
+    /** Returns whether this request is being shown **/
+    public boolean isShowing() {
+      return scheduler.queue.current() == this;
+    }
+
+    /**
+     * Drops this request if it is still waiting to be shown, or dismisses it if it is being shown.
+     * A showing sequence is only canceled if its current target is cancelable.
+     */
+    public void cancel() {
+      if (scheduler.queue.contains(this)) {
+        scheduler.remove(this);
+        return;
+      }
+
+      if (!isShowing()) {
+        return;
+      }
+
+      if (sequence != null) {
+        sequence.cancel();
+      } else if (view != null) {
+        view.dismiss(false);
+      }
+    }
+
+    boolean isStale() {
+      if (sequence != null) {
+        return sequence.isStale();
+      }
+
+      return activity.isFinishing()
+          || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && activity.isDestroyed());
+    }
+
+    View decorView() {
+      return sequence != null ? sequence.decorView() : activity.getWindow().getDecorView();
+    }
+
+    void watch(View decor) {
+      if (watcher == null) {
+        watcher = new DecorWatcher(this, decor);
+      }
+    }
+
+    void unwatch() {
+      if (watcher != null) {
+        watcher.stop();
+        watcher = null;
+      }
+    }
+
+    void show() {
+      if (sequence != null) {
+        sequence.onEnd = () -> scheduler.onEnd(this);
+        sequence.start();
+        if (!sequence.isActive()) {
+          // Nothing left to show
+          sequence.onEnd = null;
+          scheduler.onEnd(this);
+        }
+        return;
+      }
+
+      view = TapTargetView.showFor(activity, target, new EndListener(this, listener));
+    }
+  }
+
+  /**
+   * Schedules another attempt once the window of a waiting request gains focus, and drops the
+   * request once the window goes away, so it doesn't keep its activity around
+   */
+  static final class DecorWatcher implements View.OnAttachStateChangeListener {
+    final Request request;
+    final View decor;
+    @Nullable
+    private Object focusListener;
+
+    DecorWatcher(Request request, View decor) {
+      this.request = request;
+      this.decor = decor;
+      decor.addOnAttachStateChangeListener(this);
+      if (Build.VERSION.SDK_INT >= 18) {
+        focusListener = Api18.addFocusListener(decor.getViewTreeObserver(), this::onFocusGained);
+      }
+    }
+
+    void onFocusGained() {
+      request.scheduler.queue.resetRetries();
+      request.scheduler.scheduleNext();
+    }
+
+    void stop() {
+      decor.removeOnAttachStateChangeListener(this);
+      if (focusListener != null && Build.VERSION.SDK_INT >= 18) {
+        Api18.removeFocusListener(decor, focusListener);
+      }
+      focusListener = null;
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+      request.scheduler.remove(request);
+      request.scheduler.scheduleNext();
+    }
+  }
+
+  @RequiresApi(18)
+  static final class Api18 {
+    static Object addFocusListener(ViewTreeObserver observer, final Runnable onFocusGained) {
+      final ViewTreeObserver.OnWindowFocusChangeListener listener = hasFocus -> {
+        if (hasFocus) {
+          onFocusGained.run();
+        }
+      };
+      observer.addOnWindowFocusChangeListener(listener);
+      return listener;
+    }
+
+    static void removeFocusListener(View view, Object listener) {
+      final ViewTreeObserver observer = view.getViewTreeObserver();
+      if (observer.isAlive()) {
+        observer.removeOnWindowFocusChangeListener((ViewTreeObserver.OnWindowFocusChangeListener) listener);
+      }
+    }
+  }
+
+  /** Forwards everything to the app's listener, and tells the scheduler when the target is gone **/
+  static final class EndListener extends TapTargetView.Listener {
+    private final Request request;
+    private final TapTargetView.Listener delegate;
+
+    EndListener(Request request, @Nullable TapTargetView.Listener delegate) {
+      this.request = request;
+      this.delegate = delegate != null ? delegate : new TapTargetView.Listener();
+    }
+
+    @Override
+    public void onButtonClick(TapTargetView view) {
+      delegate.onButtonClick(view);
+    }
+
+    @Override
+    public void onTargetClick(TapTargetView view) {
+      delegate.onTargetClick(view);
+    }
+
+    @Override
+    public void onTargetLongClick(TapTargetView view) {
+      delegate.onTargetLongClick(view);
+    }
+
+    @Override
+    public void onTargetCancel(TapTargetView view) {
+      delegate.onTargetCancel(view);
+    }
+
+    @Override
+    public void onOuterCircleClick(TapTargetView view) {
+      delegate.onOuterCircleClick(view);
+    }
+
+    @Override
+    public void onTargetDismissed(TapTargetView view, boolean userInitiated) {
+      delegate.onTargetDismissed(view, userInitiated);
+      request.scheduler.onEnd(request);
+    }
+
+    @Override
+    public void onTargetShown(TapTargetView view) {
+      delegate.onTargetShown(view);
+    }
+
+    @Override
+    public void onCustomElementClick(TapTargetView view) {
+      delegate.onCustomElementClick(view);
+    }
+
+    @Override
+    public void onRegionClick(TapTargetView view, int regionId) {
+      delegate.onRegionClick(view, regionId);
+    }
+
+    @Override
+    public void onTargetUnavailable(TapTargetView view) {
+      delegate.onTargetUnavailable(view);
+    }
+  }
+}
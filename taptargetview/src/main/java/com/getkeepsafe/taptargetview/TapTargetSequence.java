@@ -17,24 +17,44 @@ package com.getkeepsafe.taptargetview;
 
 import android.app.Activity;
 import android.app.Dialog;
+import android.os.Build;
+import android.os.Bundle;
+import android.view.View;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
+import androidx.core.view.ViewCompat;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.Queue;
 
 /**
  * Displays a sequence of {@link TapTargetView}s.
  * <p>
- * Internally, a FIFO queue is held to dictate which {@link TapTarget} will be shown.
+ * Internally, all targets are kept in order along with a cursor pointing at the one currently
+ * shown, so the sequence can move back and forth or be restarted without adding its targets
+ * again. A single {@link TapTargetView} is kept attached for the whole sequence and rebound to
+ * each target.
+ * <p>
+ * Targets may also be added as {@link TargetSupplier}s, which are only asked for their target once
+ * the sequence reaches them. Together with {@link #transition(int, boolean, int)}, this allows
+ * branching sequences where only the targets that are actually visited are ever created.
  */
 public class TapTargetSequence {
   private final @Nullable Activity activity;
   private final @Nullable Dialog dialog;
-  private final Queue<TapTarget> targets;
+  /** Target id that {@link #transition(int, boolean, int)} can lead to, to finish the sequence **/
+  public static final int FINISH = Integer.MAX_VALUE;
+
+  private static final String STATE_CURSOR = "com.getkeepsafe.taptargetview.sequence.cursor";
+  private static final String STATE_HISTORY = "com.getkeepsafe.taptargetview.sequence.history";
+  private static final String STATE_ACTIVE = "com.getkeepsafe.taptargetview.sequence.active";
+
+  private final List<Entry> entries = new ArrayList<>();
+  // The ids of the entries, and the transitions between them
+  private final SequenceOrder order = new SequenceOrder();
+  // Indices of the targets shown before the current one, for #previous()
+  private final List<Integer> history = new ArrayList<>();
+  private int cursor = -1;
   private boolean active;
 
   @Nullable
@@ -43,6 +63,20 @@ public class TapTargetSequence {
   Listener listener;
   boolean considerOuterCircleCanceled;
   boolean continueOnCancel;
+  boolean prepareAhead = true;
+  boolean morphTransitions;
+  @Nullable
+  private String planKey;
+  @Nullable
+  private SequencePlan plan;
+  @Nullable
+  private ShownTargetRegistry registry;
+  // Started, but waiting for the registry to load before showing the first target
+  private boolean awaitingRegistry;
+
+  // Invoked once when the sequence finishes or is canceled, see TapTargetScheduler
+  @Nullable
+  Runnable onEnd;
 
   public interface Listener {
     /** Called when there are no more tap targets to display */
@@ -65,38 +99,91 @@ public class TapTargetSequence {
     void onSequenceCanceled(TapTarget lastTarget);
   }
 
+  /** Creates a {@link TapTarget} once the sequence reaches it **/
+  public interface TargetSupplier {
+    TapTarget create();
+  }
+
+  private static final class Entry {
+    @Nullable
+    TapTarget target;
+    @Nullable
+    final TargetSupplier supplier;
+
+    Entry(@Nullable TapTarget target, @Nullable TargetSupplier supplier) {
+      this.target = target;
+      this.supplier = supplier;
+    }
+  }
+
   public TapTargetSequence(Activity activity) {
     if (activity == null) throw new IllegalArgumentException("Activity is null");
     this.activity = activity;
     this.dialog = null;
-    this.targets = new LinkedList<>();
   }
 
   public TapTargetSequence(Dialog dialog) {
     if (dialog == null) throw new IllegalArgumentException("Given null Dialog");
     this.dialog = dialog;
     this.activity = null;
-    this.targets = new LinkedList<>();
   }
 
-  /** Adds the given targets, in order, to the pending queue of {@link TapTarget}s */
+  /** Adds the given targets, in order, to the end of the sequence */
   public TapTargetSequence targets(List<TapTarget> targets) {
-    this.targets.addAll(targets);
+    for (final TapTarget target : targets) {
+      target(target);
+    }
     return this;
   }
 
-  /** Adds the given targets, in order, to the pending queue of {@link TapTarget}s */
+  /** Adds the given targets, in order, to the end of the sequence */
   public TapTargetSequence targets(TapTarget... targets) {
-    Collections.addAll(this.targets, targets);
+    for (final TapTarget target : targets) {
+      target(target);
+    }
     return this;
   }
 
-  /** Adds the given target to the pending queue of {@link TapTarget}s */
+  /** Adds the given target to the end of the sequence */
   public TapTargetSequence target(TapTarget target) {
-    this.targets.add(target);
+    if (target == null) throw new IllegalArgumentException("Given null target");
+
+    add(target.id(), new Entry(target, null));
+    return this;
+  }
+
+  /**
+   * Adds a target to the end of the sequence that is only created once the sequence reaches it.
+   * If the created target has no id of its own, it is given the id passed here.
+   */
+  public TapTargetSequence target(int id, TargetSupplier supplier) {
+    if (supplier == null) throw new IllegalArgumentException("Given null supplier");
+
+    add(id, new Entry(null, supplier));
     return this;
   }
 
+  /**
+   * Specify which target follows the one with the given id, depending on whether it was clicked.
+   * Without a transition, the sequence moves on to the next target in the order they were added.
+   * <p>
+   * Both targets only have to be added by the time the sequence starts. Starting it, or adding a
+   * transition while it is active, throws an {@link IllegalStateException} if either is missing.
+   * @param toId The id of the target to move to, or {@link #FINISH} to finish the sequence
+   */
+  public TapTargetSequence transition(int fromId, boolean targetClicked, int toId) {
+    order.transition(fromId, targetClicked, toId);
+    if (active) {
+      order.checkTransitions();
+    }
+    return this;
+  }
+
+  private void add(int id, Entry entry) {
+    order.add(id);
+    entries.add(entry);
+  }
+
   /** Whether or not to continue the sequence when a {@link TapTarget} is canceled **/
   public TapTargetSequence continueOnCancel(boolean status) {
     this.continueOnCancel = status;
@@ -109,67 +196,228 @@ public class TapTargetSequence {
     return this;
   }
 
+  /**
+   * Whether or not to prepare the next {@link TapTarget} while the current one is showing, so that
+   * moving on to it does not stall. This is enabled by default.
+   */
+  public TapTargetSequence prepareAhead(boolean status) {
+    this.prepareAhead = status;
+    return this;
+  }
+
+  /**
+   * Whether or not to morph the current {@link TapTarget} into the next one, instead of dismissing
+   * it and expanding the next one from scratch. This only takes a single short animation per step.
+   */
+  public TapTargetSequence morphTransitions(boolean status) {
+    this.morphTransitions = status;
+    return this;
+  }
+
+  /**
+   * Specify a key that identifies this sequence across runs. The bounds, text layouts and
+   * placement of each step are then recorded the first time it is shown and reused by later runs
+   * under the same configuration, for as long as the step's target has not moved. Plans are kept
+   * in memory, so they only last as long as the process.
+   */
+  public TapTargetSequence plan(@Nullable String key) {
+    this.planKey = key;
+    this.plan = null;
+    return this;
+  }
+
+  /**
+   * Specify a registry to skip the targets that were shown before, by their id, and to mark the
+   * targets that this sequence shows once they are fully shown. Targets without an id are always
+   * shown. If the registry is still loading when the sequence starts, its first target is shown
+   * once it has loaded.
+   */
+  public TapTargetSequence skipShown(@Nullable ShownTargetRegistry registry) {
+    this.registry = registry;
+    return this;
+  }
+
   /** Specify the listener for this sequence **/
   public TapTargetSequence listener(Listener listener) {
     this.listener = listener;
     return this;
   }
 
-  /** Immediately starts the sequence and displays the first target from the queue **/
+  /**
+   * Immediately starts the sequence and displays the target after the cursor, which is the first
+   * target unless the sequence was canceled before
+   */
   @UiThread
   public void start() {
-    if (targets.isEmpty() || active) {
+    if (active || cursor + 1 >= entries.size()) {
       return;
     }
 
+    // Rather than once the user clicks their way to a broken transition
+    order.checkTransitions();
     active = true;
-    showNext();
+    if (registry != null && !registry.isLoaded()) {
+      // Which targets to skip is only known once the registry has been read
+      awaitingRegistry = true;
+      registry.whenLoaded(() -> {
+        if (active && awaitingRegistry) {
+          showAt(skipShown(cursor + 1), false);
+        }
+      });
+      return;
+    }
+
+    showAt(skipShown(cursor + 1), false);
   }
 
-  /** Immediately starts the sequence from the given targetId's position in the queue */
+  /** Immediately starts the sequence from the given targetId's position in the sequence */
   public void startWith(int targetId) {
     if (active) {
       return;
     }
 
-    while (targets.peek() != null && targets.peek().id() != targetId) {
-      targets.poll();
+    cursor = indexOf(targetId) - 1;
+    start();
+  }
+
+  /** Immediately starts the sequence at the specified zero-based index in the sequence */
+  public void startAt(int index) {
+    if (active) {
+      return;
     }
 
-    TapTarget peekedTarget = targets.peek();
-    if (peekedTarget == null || peekedTarget.id() != targetId) {
-      throw new IllegalStateException("Given target " + targetId + " not in sequence");
+    if (index < 0 || index >= entries.size()) {
+      throw new IllegalArgumentException("Given invalid index " + index);
     }
 
+    cursor = index - 1;
     start();
   }
 
-  /** Immediately starts the sequence at the specified zero-based index in the queue */
-  public void startAt(int index) {
+  /** Starts the sequence over from its first target, whether or not it is active **/
+  @UiThread
+  public void restart() {
+    history.clear();
     if (active) {
+      showAt(0, false);
+    } else {
+      cursor = -1;
+      start();
+    }
+  }
+
+  /**
+   * Moves on to the next target, finishing the sequence if there is none
+   * @return whether the sequence is active
+   */
+  @UiThread
+  public boolean next() {
+    if (!active) {
+      return false;
+    }
+
+    if (skipShown(nextIndex(true)) >= entries.size() && currentView != null) {
+      // Nothing to rebind the current view to
+      currentView.dismiss(false);
+    }
+
+    showNext(true);
+    return true;
+  }
+
+  /**
+   * Moves back to the previously shown target
+   * @return whether there was a previous target to move back to
+   */
+  @UiThread
+  public boolean previous() {
+    if (!active || history.isEmpty()) {
+      return false;
+    }
+
+    showAt(history.remove(history.size() - 1), false);
+    return true;
+  }
+
+  /** Moves to the target with the given id, or starts the sequence there if it is not active **/
+  @UiThread
+  public void jumpTo(int targetId) {
+    if (!active) {
+      startWith(targetId);
       return;
     }
 
-    if (index < 0 || index >= targets.size()) {
-      throw new IllegalArgumentException("Given invalid index " + index);
+    showAt(indexOf(targetId), true);
+  }
+
+  /** Returns the zero-based index of the current target, or -1 if the sequence has not started **/
+  public int currentIndex() {
+    return cursor;
+  }
+
+  /** Returns the current target, if any **/
+  @Nullable
+  public TapTarget currentTarget() {
+    return cursor >= 0 && cursor < entries.size() ? entries.get(cursor).target : null;
+  }
+
+  /** Returns the number of targets in this sequence, including ones that were not created yet **/
+  public int size() {
+    return entries.size();
+  }
+
+  /** Saves the position of this sequence, to be restored by {@link #restoreState(Bundle)} **/
+  public void saveState(Bundle outState) {
+    outState.putInt(STATE_CURSOR, cursor);
+    outState.putIntegerArrayList(STATE_HISTORY, new ArrayList<>(history));
+    outState.putBoolean(STATE_ACTIVE, active);
+  }
+
+  /**
+   * Restores the position saved by {@link #saveState(Bundle)}, e.g. after a configuration change
+   * or process death. The targets must have been added already. If the sequence was active, its
+   * current target is shown again right away, without expanding, and none of the steps before it
+   * are created again.
+   * @return whether the sequence was resumed
+   */
+  @UiThread
+  public boolean restoreState(@Nullable Bundle savedState) {
+    if (savedState == null || active) {
+      return false;
     }
 
-    final int expectedSize = targets.size() - index;
-    while (targets.peek() != null && targets.size() != expectedSize) {
-      targets.poll();
+    cursor = Math.max(-1, Math.min(savedState.getInt(STATE_CURSOR, -1), entries.size()));
+    history.clear();
+    final List<Integer> savedHistory = savedState.getIntegerArrayList(STATE_HISTORY);
+    if (savedHistory != null) {
+      for (final Integer index : savedHistory) {
+        if (index != null && index >= 0 && index < entries.size()) {
+          history.add(index);
+        }
+      }
     }
 
-    if (targets.size() != expectedSize) {
-      throw new IllegalStateException("Given index " + index + " not in sequence");
+    if (!savedState.getBoolean(STATE_ACTIVE) || cursor < 0 || cursor >= entries.size()) {
+      return false;
     }
 
-    start();
+    order.checkTransitions();
+    active = true;
+    showAt(cursor, false);
+    if (currentView != null) {
+      currentView.restoredShown = true;
+    }
+    return true;
+  }
+
+  private int indexOf(int targetId) {
+    return order.indexOf(targetId);
   }
 
   /**
    * Cancels the sequence, if the current target is cancelable.
-   * When the sequence is canceled, the current target is dismissed and the remaining targets are
-   * removed from the sequence.
+   * When the sequence is canceled, the current target is dismissed. The targets are kept, so
+   * {@link #start()} continues after the current target and {@link #restart()} starts over.
    * @return whether the sequence was canceled or not
    */
   @UiThread
@@ -177,40 +425,156 @@ public class TapTargetSequence {
     if (!active || currentView == null || !currentView.cancelable) {
       return false;
     }
+    currentView.cancelRebind();
     currentView.dismiss(false);
     active = false;
-    targets.clear();
     if (listener != null) {
       listener.onSequenceCanceled(currentView.target);
     }
+    notifyEnd();
     return true;
   }
 
-  void showNext() {
-    try {
-      TapTarget tapTarget = targets.remove();
-      if (activity != null) {
-        currentView = TapTargetView.showFor(activity, tapTarget, tapTargetListener);
-      } else {
-        currentView = TapTargetView.showFor(dialog, tapTarget, tapTargetListener);
+  /** Returns whether this sequence is currently showing its targets **/
+  public boolean isActive() {
+    return active;
+  }
+
+  /** Returns whether the screen this sequence shows its targets on is gone **/
+  boolean isStale() {
+    if (activity != null) {
+      return activity.isFinishing()
+          || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && activity.isDestroyed());
+    }
+
+    return !dialog.isShowing();
+  }
+
+  /** Returns the decor view of the window this sequence shows its targets in **/
+  View decorView() {
+    return activity != null ? activity.getWindow().getDecorView() : dialog.getWindow().getDecorView();
+  }
+
+  private void notifyEnd() {
+    final Runnable onEnd = this.onEnd;
+    this.onEnd = null;
+    if (onEnd != null) {
+      onEnd.run();
+    }
+  }
+
+  /** Returns the index of the target that follows the current one, which may be past the end **/
+  private int nextIndex(boolean targetClicked) {
+    return nextIndex(cursor, targetClicked);
+  }
+
+  private int nextIndex(int index, boolean targetClicked) {
+    return order.nextIndex(index, targetClicked);
+  }
+
+  /** Returns the target at the given index, creating it if needed **/
+  private TapTarget targetAt(int index) {
+    final Entry entry = entries.get(index);
+    if (entry.target == null && entry.supplier != null) {
+      final TapTarget target = entry.supplier.create();
+      if (target == null) {
+        throw new IllegalStateException("Supplier for target " + order.idAt(index) + " returned null");
+      }
+
+      if (target.id() == -1) {
+        target.id = order.idAt(index);
       }
-    } catch (NoSuchElementException e) {
+      entry.target = target;
+    }
+
+    return entry.target;
+  }
+
+  /**
+   * Returns the given index, or the first one following it that has a target which was not shown
+   * before if we are skipping those
+   */
+  private int skipShown(int index) {
+    return order.skipShown(index, registry);
+  }
+
+  void showNext(boolean targetClicked) {
+    showAt(skipShown(nextIndex(targetClicked)), true);
+  }
+
+  void showAt(int index, boolean forward) {
+    awaitingRegistry = false;
+    if (forward && cursor >= 0 && cursor < entries.size()) {
+      history.add(cursor);
+    }
+
+    if (index >= entries.size()) {
+      cursor = entries.size();
       currentView = null;
+      active = false;
       // No more targets
       if (listener != null) {
         listener.onSequenceFinish();
       }
+      notifyEnd();
+      return;
+    }
+
+    cursor = index;
+    final TapTarget tapTarget = targetAt(index);
+    if (planKey != null) {
+      if (plan == null) {
+        plan = SequencePlan.of(planKey, activity != null ? activity : dialog.getContext());
+      }
+      tapTarget.planStep = plan.step(index);
+    }
+    if (currentView != null && ViewCompat.isAttachedToWindow(currentView)) {
+      // Keep the current view attached for the whole sequence, rebinding it to each target
+      // once it has finished dismissing the previous one
+      if (morphTransitions) {
+        currentView.morphTo(tapTarget, tapTargetListener);
+      } else {
+        currentView.rebind(tapTarget, tapTargetListener);
+      }
+    } else if (activity != null) {
+      currentView = TapTargetView.showFor(activity, tapTarget, tapTargetListener);
+    } else {
+      currentView = TapTargetView.showFor(dialog, tapTarget, tapTargetListener);
+    }
+
+    if (prepareAhead) {
+      // Only targets that already exist, preparing must not create the ones we may never reach
+      final int nextIndex = nextIndex(true);
+      currentView.prepare(nextIndex < entries.size() ? entries.get(nextIndex).target : null);
     }
   }
 
   private final TapTargetView.Listener tapTargetListener = new TapTargetView.Listener() {
+    @Override
+    public void onTargetShown(TapTargetView view) {
+      // Only now, a target that turns out to be unavailable was never seen
+      if (registry == null || view != currentView || cursor < 0 || cursor >= entries.size()) {
+        return;
+      }
+
+      final int id = order.idAt(cursor);
+      if (ShownTargetRegistry.isTrackable(id)) {
+        registry.markShown(id);
+      }
+    }
+
     @Override
     public void onTargetClick(TapTargetView view) {
-      super.onTargetClick(view);
+      if (morphesToNext(view, true)) {
+        // The view stays up and morphs into the next target
+        view.isInteractable = false;
+      } else {
+        super.onTargetClick(view);
+      }
       if (listener != null) {
         listener.onSequenceStep(view.target, true);
       }
-      showNext();
+      showNext(true);
     }
 
     @Override
@@ -222,17 +586,35 @@ public class TapTargetSequence {
 
     @Override
     public void onTargetCancel(TapTargetView view) {
-      super.onTargetCancel(view);
+      if (continueOnCancel && morphesToNext(view, false)) {
+        view.isInteractable = false;
+      } else {
+        super.onTargetCancel(view);
+      }
       if (continueOnCancel) {
         if (listener != null) {
           listener.onSequenceStep(view.target, false);
         }
-        showNext();
+        showNext(false);
       } else {
+        active = false;
         if (listener != null) {
           listener.onSequenceCanceled(view.target);
         }
+        notifyEnd();
       }
     }
+
+    private boolean morphesToNext(TapTargetView view, boolean targetClicked) {
+      return morphTransitions && skipShown(nextIndex(targetClicked)) < entries.size()
+          && view == currentView && view.isVisible();
+    }
+
+    @Override
+    public void onTargetUnavailable(TapTargetView view) {
+      super.onTargetUnavailable(view);
+      // Targets that never became ready are skipped, and not returned to by #previous()
+      showAt(skipShown(nextIndex(false)), false);
+    }
   };
 }
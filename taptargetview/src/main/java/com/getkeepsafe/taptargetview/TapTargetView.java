@@ -26,6 +26,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorFilter;
 import android.graphics.Outline;
 import android.graphics.Paint;
 import android.graphics.Path;
@@ -37,19 +38,23 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Region;
 import android.graphics.Typeface;
+import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
+import androidx.core.graphics.ColorUtils;
+import androidx.core.graphics.drawable.DrawableCompat;
+import androidx.core.view.ViewCompat;
 
 import android.text.DynamicLayout;
 import android.text.Layout;
 import android.text.SpannableStringBuilder;
 import android.text.StaticLayout;
 import android.text.TextPaint;
-import android.util.DisplayMetrics;
 import android.view.Gravity;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
@@ -58,6 +63,7 @@ import android.view.ViewGroup;
 import android.view.ViewManager;
 import android.view.ViewOutlineProvider;
 import android.view.ViewTreeObserver;
+import android.view.Window;
 import android.view.WindowManager;
 import android.view.animation.AccelerateDecelerateInterpolator;
 
@@ -75,11 +81,12 @@ import android.view.animation.AccelerateDecelerateInterpolator;
 public class TapTargetView extends View {
   private boolean isDismissed = false;
   private boolean isDismissing = false;
-  private boolean isInteractable = true;
+  boolean isInteractable = true;
 
-  final int TARGET_PADDING;
-  final int TARGET_RADIUS;
-  final int TARGET_PULSE_RADIUS;
+  // These depend on the current target, see #resetForTarget(Context)
+  int TARGET_PADDING;
+  int TARGET_RADIUS;
+  int TARGET_PULSE_RADIUS;
   final int TEXT_PADDING;
   final int TEXT_SPACING;
   final int TEXT_MAX_WIDTH;
@@ -93,12 +100,13 @@ public class TapTargetView extends View {
   @Nullable
   final ViewGroup boundingParent;
   final ViewManager parent;
-  final TapTarget target;
+  TapTarget target;
   final Rect targetBounds;
 
-  final TextPaint titlePaint;
-  final TextPaint descriptionPaint;
-  final TextPaint buttonTextPaint;
+  // Not final, as a prepared target brings its own paints along with its text layouts
+  TextPaint titlePaint;
+  TextPaint descriptionPaint;
+  TextPaint buttonTextPaint;
   final RectF buttonRect;
   final Paint buttonPaint;
   final Paint outerCirclePaint;
@@ -153,10 +161,28 @@ public class TapTargetView extends View {
 
   int textAlpha;
   int dimColor;
+  // Whether the window dims behind us, in place of drawing dimColor ourselves
+  boolean dimBehind;
+  // The dim is drawn as our background, which is recorded once rather than on every frame
+  @Nullable
+  Drawable dimBackground;
+  int dimBackgroundColor;
+  final Rect dimBackgroundInsets = new Rect();
 
   float lastTouchX;
   float lastTouchY;
 
+  // Set once a tap, long click or back press was handled for the current target, so that input
+  // arriving while we transition away from it is ignored
+  boolean inputConsumed;
+
+  // The view a pass through tap is being forwarded to, see TapTarget#passThrough(boolean)
+  @Nullable
+  private View passThroughView;
+  private float passThroughDx;
+  private float passThroughDy;
+  private final int[] passThroughLocation = new int[2];
+
   int topBoundary;
   int bottomBoundary;
 
@@ -167,18 +193,121 @@ public class TapTargetView extends View {
 
   Bitmap tintedTarget;
 
+  // An animated icon is drawn as is, with us as its callback, rather than from a bitmap. It is a
+  // copy of the target's icon where possible, so that tinting it leaves the app's icon alone
+  @Nullable
+  Drawable animatedIcon;
+  // Whether we had to use the target's icon itself, and the app's color filter to restore on it
+  private boolean animatedIconShared;
+  @Nullable
+  private ColorFilter animatedIconColorFilter;
+
   Listener listener;
 
   @Nullable
-  ICustomElement customElement;
+  CustomElement customElement;
+  // Only elements that report their changes can be cached
+  @Nullable
+  CustomElementCache customElementCache;
+  // The bounds the custom element reported when last laid out
+  final Rect customDrawBounds = new Rect();
+  boolean customElementLayoutRequested;
 
   @Nullable
   ViewOutlineProvider outlineProvider;
 
+  // Set while a rebind waits for the current dismiss animation to finish
+  @Nullable
+  TapTarget pendingTarget;
+  @Nullable
+  Listener pendingListener;
+
+  // Whether this view may be pooled for reuse once dismissed
+  boolean recyclable;
+
+  // The target to prepare ahead of time, its preparation once started, and the preparation for
+  // a rebind that waits for the current dismiss animation to finish
+  @Nullable
+  TapTarget nextTarget;
+  @Nullable
+  PreparedTarget prepared;
+  @Nullable
+  PreparedTarget pendingPrepared;
+
+  // A target bound once the dismiss animation finishes has already waited that long, which counts
+  // towards its show delay
+  long dismissStartedAt;
+  long showDelayElapsed;
+
+  // The text width that the current text layouts were created for
+  int laidOutTextWidth = -1;
+
+  // Whether the text paints belong to a sequence plan, which must not be reconfigured
+  boolean textPaintsShared;
+
+  // Set when a sequence restores a target that was already shown, so it goes straight to pulsing
+  boolean restoredShown;
+
+  // Set while morphing from the previous target, see #morphTo(TapTarget, Listener)
+  @Nullable
+  Morph morph;
+
+  /** What a morph animates from and to **/
+  static final class Morph {
+    final int fromCenterX;
+    final int fromCenterY;
+    final float fromRadius;
+    final int fromOuterCircleAlpha;
+    final int fromOuterCircleColor;
+    final Rect fromTargetBounds;
+    final float fromTargetCircleRadius;
+    final int fromTargetCircleColor;
+    final Rect fromTextBounds;
+    @Nullable
+    final StaticLayout fromTitleLayout;
+    @Nullable
+    final StaticLayout fromDescriptionLayout;
+    final float fromDescriptionTextAlpha;
+
+    int[] toCenter;
+    final Rect toTargetBounds = new Rect();
+    int toOuterCircleAlpha;
+    int toOuterCircleColor;
+    int toTargetCircleColor;
+
+    Morph(TapTargetView view) {
+      fromCenterX = view.outerCircleCenter[0];
+      fromCenterY = view.outerCircleCenter[1];
+      fromRadius = view.outerCircleRadius;
+      fromOuterCircleAlpha = view.outerCircleAlpha;
+      fromOuterCircleColor = view.outerCirclePaint.getColor();
+      fromTargetBounds = new Rect(view.targetBounds);
+      fromTargetCircleRadius = view.targetCircleRadius;
+      fromTargetCircleColor = view.targetCirclePaint.getColor();
+      fromTextBounds = view.textBounds;
+      fromTitleLayout = view.titleLayout;
+      fromDescriptionLayout = view.descriptionLayout;
+      fromDescriptionTextAlpha = view.target.descriptionTextAlpha;
+    }
+  }
+
   public static TapTargetView showFor(Activity activity, TapTarget target) {
     return showFor(activity, target, null);
   }
 
+  /**
+   * Specify how many dismissed views may be kept per activity, to be reused by later calls to
+   * {@link #showFor(Activity, TapTarget, Listener)}. Pooling is disabled (0) by default.
+   * <p>
+   * <b>Note:</b> When pooling is enabled, a view returned by
+   * {@link #showFor(Activity, TapTarget, Listener)} must not be used after
+   * {@link Listener#onTargetDismissed(TapTargetView, boolean)}, as it may have been bound to
+   * another target since
+   */
+  public static void setPoolSize(int size) {
+    ViewPool.setMaxSize(size);
+  }
+
   public static TapTargetView showFor(Activity activity, TapTarget target, Listener listener) {
     if (activity == null) throw new IllegalArgumentException("Activity is null");
 
@@ -186,8 +315,19 @@ public class TapTargetView extends View {
     final ViewGroup.LayoutParams layoutParams = new ViewGroup.LayoutParams(
         ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
     final ViewGroup content = (ViewGroup) decor.findViewById(android.R.id.content);
-    final TapTargetView tapTargetView = new TapTargetView(activity, decor, content, target, listener);
-    decor.addView(tapTargetView, layoutParams);
+    // Prefer an installed host, which keeps the decor from being laid out again
+    final TapTargetOverlayHost host = TapTargetOverlayHost.find(decor);
+    final ViewGroup parent = host != null ? host : decor;
+    final ViewPool pool = ViewPool.of(parent);
+    TapTargetView tapTargetView = pool.obtain();
+    if (tapTargetView != null) {
+      tapTargetView.bind(target, listener, null);
+    } else {
+      tapTargetView = new TapTargetView(activity, parent, content, target, listener);
+      tapTargetView.recyclable = pool.isEnabled();
+    }
+    tapTargetView.layoutAhead(decor.getWidth(), decor.getHeight());
+    parent.addView(tapTargetView, layoutParams);
 
     return tapTargetView;
   }
@@ -196,9 +336,25 @@ public class TapTargetView extends View {
     return showFor(dialog, target, null);
   }
 
+  /**
+   * Shows the given target on top of the given dialog. Dialogs whose window fills the screen, such
+   * as bottom sheets, get the target added to their own window. Other dialogs are too small to
+   * hold it, so the target gets a window of its own.
+   */
   public static TapTargetView showFor(Dialog dialog, TapTarget target, Listener listener) {
     if (dialog == null) throw new IllegalArgumentException("Dialog is null");
 
+    final Window window = dialog.getWindow();
+    if (window != null && fillsScreen(window)) {
+      final ViewGroup decor = (ViewGroup) window.getDecorView();
+      final ViewGroup content = (ViewGroup) decor.findViewById(android.R.id.content);
+      final TapTargetView tapTargetView = new TapTargetView(dialog.getContext(), decor, content, target, listener);
+      tapTargetView.layoutAhead(decor.getWidth(), decor.getHeight());
+      decor.addView(tapTargetView, new ViewGroup.LayoutParams(
+          ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+      return tapTargetView;
+    }
+
     final Context context = dialog.getContext();
     final WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
     final WindowManager.LayoutParams params = new WindowManager.LayoutParams();
@@ -212,11 +368,36 @@ public class TapTargetView extends View {
     params.height = WindowManager.LayoutParams.MATCH_PARENT;
 
     final TapTargetView tapTargetView = new TapTargetView(context, windowManager, null, target, listener);
+    tapTargetView.dimBehind = dimBehind(params, target, tapTargetView.dimColor);
     windowManager.addView(tapTargetView, params);
 
     return tapTargetView;
   }
 
+  /**
+   * Lets the given window dim what is behind it, which the system does without us drawing
+   * anything, if the given dim color is one the system can dim with. A transparent target has to
+   * clear the dim to show what is behind it undimmed, so it keeps drawing the dim itself
+   * @return whether the window dims behind itself
+   */
+  static boolean dimBehind(WindowManager.LayoutParams params, TapTarget target, int dimColor) {
+    final boolean dimBehind = dimColor != -1 && (dimColor & 0x00FFFFFF) == 0 && !target.transparentTarget;
+    if (dimBehind) {
+      params.flags |= WindowManager.LayoutParams.FLAG_DIM_BEHIND;
+      params.dimAmount = Color.alpha(dimColor) / 255.0f;
+    } else {
+      params.flags &= ~WindowManager.LayoutParams.FLAG_DIM_BEHIND;
+    }
+
+    return dimBehind;
+  }
+
+  private static boolean fillsScreen(Window window) {
+    final WindowManager.LayoutParams attributes = window.getAttributes();
+    return attributes.width == WindowManager.LayoutParams.MATCH_PARENT
+        && attributes.height == WindowManager.LayoutParams.MATCH_PARENT;
+  }
+
   public static class Listener {
 
     public void onButtonClick(TapTargetView view) {
@@ -241,9 +422,30 @@ public class TapTargetView extends View {
 
     public void onTargetDismissed(TapTargetView view, boolean userInitiated) { }
 
+    /** Called once the target is fully shown and can be interacted with **/
+    public void onTargetShown(TapTargetView view) { }
+
     public void onCustomElementClick(TapTargetView view) { }
+
+    /** Called when a region added with {@link #addInteractiveRegion} is clicked **/
+    public void onRegionClick(TapTargetView view, int regionId) { }
+
+    /**
+     * Called when the target could not be resolved within its
+     * {@link TapTarget#readyTimeout(long)}. By default the view is dismissed.
+     */
+    public void onTargetUnavailable(TapTargetView view) {
+      view.dismiss(false);
+    }
   }
 
+  /** The shape of an interactive region, see {@link #addInteractiveRegion(int, HitShape, int)} **/
+  public interface HitShape {
+    /** Returns whether the given point, in the coordinates of the view, lies within this shape **/
+    boolean contains(float x, float y);
+  }
+
+  /** @see CustomElement CustomElement, which doesn't have to allocate bounds **/
   public interface ICustomElement {
 
     void draw(Canvas canvas, int alpha);
@@ -253,6 +455,55 @@ public class TapTargetView extends View {
     @NonNull Rect getDrawBounds(int startX, int startY);
   }
 
+  /**
+   * An element drawn below the button of a target. It is laid out whenever the target is, and its
+   * bounds are kept until then. Use the {@link Invalidator} it is attached with to report changes
+   */
+  public interface CustomElement {
+    /** Called when shown, the invalidator is valid until {@link #onDetach()} **/
+    void onAttach(@NonNull Invalidator invalidator);
+
+    /**
+     * Measures the element when placed at the given position, the top left of the canvas it is
+     * drawn into, and writes the bounds it draws within and reacts to taps within. Both are in the
+     * coordinates of the view
+     */
+    void onLayout(int startX, int startY, @NonNull Rect outDrawBounds, @NonNull Rect outClickBounds);
+
+    void draw(Canvas canvas, int alpha);
+
+    void onDetach();
+  }
+
+  /** Reports changes of a {@link CustomElement} **/
+  public interface Invalidator {
+    /** The element looks different, but its bounds are the same **/
+    void invalidate();
+
+    /** The bounds of the element changed, it will be laid out again **/
+    void requestLayout();
+  }
+
+  private final Invalidator customElementInvalidator = new Invalidator() {
+    @Override
+    public void invalidate() {
+      if (customElementCache != null) {
+        customElementCache.invalidate();
+      }
+      ViewCompat.postInvalidateOnAnimation(TapTargetView.this);
+    }
+
+    @Override
+    public void requestLayout() {
+      if (!customElementLayoutRequested) {
+        customElementLayoutRequested = true;
+        post(layoutCustomElementRunnable);
+      }
+    }
+  };
+
+  private final Runnable layoutCustomElementRunnable = this::onCustomElementLayoutRequested;
+
   final FloatValueAnimatorBuilder.UpdateListener expandContractUpdateListener = new FloatValueAnimatorBuilder.UpdateListener() {
     @Override
     public void onUpdate(float lerpTime) {
@@ -291,16 +542,20 @@ public class TapTargetView extends View {
     }
   };
 
+  // Delayed by TapTarget#showDelay(long) when started
   final ValueAnimator expandAnimation = new FloatValueAnimatorBuilder()
       .duration(250)
-      .delayBy(250)
       .interpolator(new AccelerateDecelerateInterpolator())
       .onUpdate(expandContractUpdateListener)
       .onEnd(new FloatValueAnimatorBuilder.EndListener() {
         @Override
         public void onEnd() {
-          pulseAnimation.start();
-          isInteractable = true;
+          // Canceling ends the animation as well, don't start pulsing if we were dismissed
+          if (isDismissing || isDismissed) {
+            return;
+          }
+
+          startPulsing();
         }
       })
       .build();
@@ -331,7 +586,12 @@ public class TapTargetView extends View {
       .duration(250)
       .interpolator(new AccelerateDecelerateInterpolator())
       .onUpdate(expandContractUpdateListener)
-      .onEnd(() -> finishDismiss(true))
+      .onEnd(() -> {
+        // Also invoked when canceled, only finish a dismissal that is still in progress
+        if (isDismissing) {
+          finishDismiss(true);
+        }
+      })
       .build();
 
   private final ValueAnimator dismissConfirmAnimation = new FloatValueAnimatorBuilder()
@@ -355,14 +615,68 @@ public class TapTargetView extends View {
           invalidateViewAndOutline(drawingBounds);
         }
       })
-      .onEnd(() -> finishDismiss(true))
+      .onEnd(() -> {
+        // Also invoked when canceled, only finish a dismissal that is still in progress
+        if (isDismissing) {
+          finishDismiss(true);
+        }
+      })
+      .build();
+
+  final ValueAnimator morphAnimation = new FloatValueAnimatorBuilder()
+      .duration(300)
+      .interpolator(new AccelerateDecelerateInterpolator())
+      .onUpdate(new FloatValueAnimatorBuilder.UpdateListener() {
+        @Override
+        public void onUpdate(float lerpTime) {
+          updateMorph(lerpTime);
+        }
+      })
+      .onEnd(() -> {
+        // Also invoked when canceled, only finish a morph that is still in progress
+        if (morph == null || isDismissing || isDismissed) {
+          return;
+        }
+
+        morph = null;
+        startPulsing();
+        onCustomElementLayoutRequested();
+      })
       .build();
 
   private final ValueAnimator[] animators = new ValueAnimator[]
-      {expandAnimation, pulseAnimation, dismissConfirmAnimation, dismissAnimation};
+      {expandAnimation, pulseAnimation, dismissConfirmAnimation, dismissAnimation, morphAnimation};
 
   private final ViewTreeObserver.OnGlobalLayoutListener globalLayoutListener;
 
+  /** The z-order of the outer circle, regions with a higher z-order are tested first **/
+  public static final int Z_OUTER_CIRCLE = 0;
+  /** The z-order of the custom element **/
+  public static final int Z_CUSTOM_ELEMENT = 100;
+  /** The z-order of the target circle **/
+  public static final int Z_TARGET = 200;
+  /** The z-order of the button **/
+  public static final int Z_BUTTON = 300;
+
+  // Built in regions have negative ids, those of the app can't
+  private static final int REGION_OUTER_CIRCLE = -1;
+  private static final int REGION_CUSTOM_ELEMENT = -2;
+  private static final int REGION_TARGET = -3;
+  private static final int REGION_BUTTON = -4;
+
+  final HitRegions hitRegions = new HitRegions();
+  private final Rect customClickBounds = new Rect();
+
+  // Follows a tracked target, reusing these on every frame
+  private final Rect trackedBounds = new Rect();
+  private final int[] trackingOffset = new int[2];
+  @Nullable
+  private ViewTreeObserver trackingObserver;
+  private final ViewTreeObserver.OnPreDrawListener trackingListener = () -> {
+    followTarget();
+    return true;
+  };
+
   /**
    * This constructor should only be used directly for very specific use cases not covered by
    * the static factory methods.
@@ -390,21 +704,15 @@ public class TapTargetView extends View {
     this.parent = parent;
     this.boundingParent = boundingParent;
     this.listener = userListener != null ? userListener : new Listener();
-    this.title = target.title;
-    this.description = target.description;
-    this.buttonText = target.buttonText;
 
-    TARGET_PADDING = UiUtil.dp(context, calculateTargetPadding());
-    CIRCLE_PADDING = UiUtil.dp(context, 30);
-    TEXT_PADDING = UiUtil.dp(context, 30);
-    TARGET_RADIUS = UiUtil.dp(context, target.targetRadius);
-    TEXT_SPACING = UiUtil.dp(context, 8);
-    TEXT_MAX_WIDTH = UiUtil.dp(context, 360);
-    TEXT_POSITIONING_BIAS = UiUtil.dp(context, 20);
+    CIRCLE_PADDING = UiUtil.dp(context, TargetLayout.CIRCLE_PADDING);
+    TEXT_PADDING = UiUtil.dp(context, TargetLayout.TEXT_PADDING);
+    TEXT_SPACING = UiUtil.dp(context, TargetLayout.TEXT_SPACING);
+    TEXT_MAX_WIDTH = UiUtil.dp(context, TargetLayout.TEXT_MAX_WIDTH);
+    TEXT_POSITIONING_BIAS = UiUtil.dp(context, TargetLayout.TEXT_POSITIONING_BIAS);
     GUTTER_DIM = UiUtil.dp(context, 88);
     SHADOW_DIM = UiUtil.dp(context, 8);
     SHADOW_JITTER_DIM = UiUtil.dp(context, 1);
-    TARGET_PULSE_RADIUS = (int) (0.1f * TARGET_RADIUS);
     BUTTON_MARGIN_TOP = UiUtil.dp(context, 20);
 
     outerCirclePath = new Path();
@@ -414,29 +722,13 @@ public class TapTargetView extends View {
     buttonRect = new RectF();
     buttonPaint = new Paint();
     buttonPaint.setAntiAlias(true);
-    buttonPaint.setColor(Color.parseColor("#456FCC"));
     buttonPaint.setStrokeWidth(5);
     buttonPaint.setStyle(Paint.Style.FILL);
 
-    buttonTextPaint = new TextPaint();
-    buttonTextPaint.setTextSize(target.buttonTextSizePx(context));
-    buttonTextPaint.setTypeface(Typeface.create("sans-serif-medium", Typeface.NORMAL));
-    buttonTextPaint.setAntiAlias(true);
-
-    titlePaint = new TextPaint();
-    titlePaint.setTextSize(target.titleTextSizePx(context));
-    titlePaint.setTypeface(Typeface.create("sans-serif-medium", Typeface.NORMAL));
-    titlePaint.setAntiAlias(true);
-
-    descriptionPaint = new TextPaint();
-    descriptionPaint.setTextSize(target.descriptionTextSizePx(context));
-    descriptionPaint.setTypeface(Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL));
-    descriptionPaint.setAntiAlias(true);
-    descriptionPaint.setAlpha((int) (0.54f * 255.0f));
+    newTextPaints();
 
     outerCirclePaint = new Paint();
     outerCirclePaint.setAntiAlias(true);
-    outerCirclePaint.setAlpha((int) (target.outerCircleAlpha * 255.0f));
 
     outerCircleShadowPaint = new Paint();
     outerCircleShadowPaint.setAntiAlias(true);
@@ -451,24 +743,7 @@ public class TapTargetView extends View {
     targetCirclePulsePaint = new Paint();
     targetCirclePulsePaint.setAntiAlias(true);
 
-    applyTargetOptions(context);
-
-    final boolean hasKitkat = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
-    final boolean translucentStatusBar;
-    final boolean translucentNavigationBar;
-    final boolean layoutNoLimits;
-
-    if (context instanceof Activity) {
-      Activity activity = (Activity) context;
-      final int flags = activity.getWindow().getAttributes().flags;
-      translucentStatusBar = hasKitkat && (flags & WindowManager.LayoutParams.FLAG_TRANSLUCENT_STATUS) != 0;
-      translucentNavigationBar = hasKitkat && (flags & WindowManager.LayoutParams.FLAG_TRANSLUCENT_NAVIGATION) != 0;
-      layoutNoLimits = (flags & WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS) != 0;
-    } else {
-      translucentStatusBar = false;
-      translucentNavigationBar = false;
-      layoutNoLimits = false;
-    }
+    resetForTarget(context);
 
     globalLayoutListener = () -> {
       if (isDismissing) {
@@ -478,6 +753,10 @@ public class TapTargetView extends View {
       target.onReady(new Runnable() {
         @Override
         public void run() {
+          if (isDismissed || isDismissing) {
+            return;
+          }
+
           final int[] offset = new int[2];
 
           targetBounds.set(target.bounds());
@@ -486,39 +765,44 @@ public class TapTargetView extends View {
           targetBounds.offset(-offset[0], -offset[1]);
 
           if (boundingParent != null) {
-            final WindowManager windowManager
-                = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-            final DisplayMetrics displayMetrics = new DisplayMetrics();
-            windowManager.getDefaultDisplay().getMetrics(displayMetrics);
-
-            final Rect rect = new Rect();
-            boundingParent.getWindowVisibleDisplayFrame(rect);
-            int[] parentLocation = new int[2];
-            boundingParent.getLocationInWindow(parentLocation);
-
-            if (translucentStatusBar) {
-              rect.top = parentLocation[1];
-            }
-            if (translucentNavigationBar) {
-              rect.bottom = parentLocation[1] + boundingParent.getHeight();
-            }
-
-            // We bound the boundaries to be within the screen's coordinates to
-            // handle the case where the flag FLAG_LAYOUT_NO_LIMITS is set
-            if (layoutNoLimits) {
-              topBoundary = Math.max(0, rect.top);
-              bottomBoundary = Math.min(rect.bottom, displayMetrics.heightPixels);
-            } else {
-              topBoundary = rect.top;
-              bottomBoundary = rect.bottom;
-            }
+            final int[] boundaries = new int[2];
+            TargetLayout.calculateBoundaries(context, boundingParent, boundaries);
+            topBoundary = boundaries[0];
+            bottomBoundary = boundaries[1];
           }
 
+          updateDimBackground();
           drawTintedTarget();
+          startAnimatedIcon();
           requestFocus();
-          calculateDimensions();
+          final SequencePlan.Step planStep = target.planStep;
+          if (planStep == null || !planStep.adoptGeometry(TapTargetView.this)) {
+            calculateDimensions();
+            if (planStep != null) {
+              planStep.record(TapTargetView.this);
+            }
+          }
+
+          layoutHitRegions();
+          if (target.trackTarget) {
+            startTracking();
+          }
+
+          if (morph != null) {
+            startMorphAnimation();
+          } else {
+            startExpandAnimation();
+          }
+        }
+      }, new Runnable() {
+        @Override
+        public void run() {
+          if (isDismissed || isDismissing) {
+            return;
+          }
 
-          startExpandAnimation();
+          isInteractable = false;
+          listener.onTargetUnavailable(TapTargetView.this);
         }
       });
     };
@@ -528,41 +812,33 @@ public class TapTargetView extends View {
     setFocusableInTouchMode(true);
     setClickable(true);
     setOnClickListener(v -> {
-      if (listener == null || outerCircleCenter == null || !isInteractable) return;
-
-      boolean clickedOnCustomElement = false;
-      if (customElement != null) {
-        final Rect customBounds = customElement.getClickBounds(buttonBounds.left, buttonBounds.bottom);
-        clickedOnCustomElement =
-          lastTouchX > customBounds.left && lastTouchX < customBounds.right && lastTouchY > customBounds.top && lastTouchY < customBounds.bottom;
-      }
+      if (listener == null || outerCircleCenter == null || !acceptsInput()) return;
 
-      final boolean clickedOnButton =
-          lastTouchX > buttonBounds.left && lastTouchX < buttonBounds.right && lastTouchY > buttonBounds.top && lastTouchY < buttonBounds.bottom;
-      final boolean clickedInTarget =
-          distance(targetBounds.centerX(), targetBounds.centerY(), (int) lastTouchX, (int) lastTouchY) <= targetCircleRadius;
-      final double distanceToOuterCircleCenter = distance(outerCircleCenter[0], outerCircleCenter[1],
-          (int) lastTouchX, (int) lastTouchY);
-      final boolean clickedInsideOfOuterCircle = distanceToOuterCircleCenter <= outerCircleRadius;
-
-      if (clickedOnButton) {
+      final int region = hitTest(lastTouchX, lastTouchY);
+      if (region == REGION_BUTTON) {
+        inputConsumed = true;
         listener.onButtonClick(TapTargetView.this);
-      } else if (clickedInTarget) {
+      } else if (region == REGION_TARGET) {
+        inputConsumed = true;
         listener.onTargetClick(TapTargetView.this);
-      } else if (clickedOnCustomElement) {
+      } else if (region == REGION_CUSTOM_ELEMENT) {
         listener.onCustomElementClick(TapTargetView.this);
-      } else if (clickedInsideOfOuterCircle) {
+      } else if (region == REGION_OUTER_CIRCLE) {
         listener.onOuterCircleClick(TapTargetView.this);
+      } else if (region != HitRegions.NONE) {
+        listener.onRegionClick(TapTargetView.this, region);
       } else if (cancelable) {
         isInteractable = false;
+        inputConsumed = true;
         listener.onTargetCancel(TapTargetView.this);
       }
     });
 
     setOnLongClickListener(v -> {
-      if (listener == null) return false;
+      if (listener == null || outerCircleCenter == null || !acceptsInput()) return false;
 
-      if (targetBounds.contains((int) lastTouchX, (int) lastTouchY)) {
+      if (hitTest(lastTouchX, lastTouchY) == REGION_TARGET) {
+        inputConsumed = true;
         listener.onTargetLongClick(TapTargetView.this);
         return true;
       }
@@ -581,25 +857,178 @@ public class TapTargetView extends View {
         arrowPadding = target.targetArrowDrawable.getMinimumHeight();
       }
 
-      return 30 + arrowPadding;
+      return TargetLayout.TARGET_PADDING + arrowPadding;
     } else {
-      return 30;
+      return TargetLayout.TARGET_PADDING;
     }
   }
 
   private void startExpandAnimation() {
-    if (!visible) {
-      isInteractable = false;
-      expandAnimation.start();
-      visible = true;
+    if (visible) {
+      return;
+    }
+
+    visible = true;
+    if (target.startExpanded || restoredShown) {
+      restoredShown = false;
+      expandContractUpdateListener.onUpdate(1.0f);
+      startPulsing();
+      return;
+    }
+
+    isInteractable = false;
+    expandAnimation.setStartDelay(Math.max(0, target.showDelay - showDelayElapsed));
+    showDelayElapsed = 0;
+    expandAnimation.start();
+  }
+
+  private void startMorphAnimation() {
+    if (visible || morph == null) {
+      return;
+    }
+
+    isInteractable = false;
+    visible = true;
+
+    // Animate the drawn geometry from the previous target to what we just calculated
+    morph.toCenter = outerCircleCenter;
+    morph.toTargetBounds.set(targetBounds);
+    morph.toOuterCircleAlpha = (int) (target.outerCircleAlpha * 255.0f);
+    morph.toOuterCircleColor = outerCirclePaint.getColor();
+    morph.toTargetCircleColor = targetCirclePaint.getColor();
+    outerCircleCenter = new int[] {morph.fromCenterX, morph.fromCenterY};
+    updateMorph(0.0f);
+
+    morphAnimation.start();
+  }
+
+  void updateMorph(float lerpTime) {
+    final Morph morph = this.morph;
+    if (morph == null || morph.toCenter == null) {
+      return;
+    }
+
+    outerCircleCenter[0] = lerp(morph.fromCenterX, morph.toCenter[0], lerpTime);
+    outerCircleCenter[1] = lerp(morph.fromCenterY, morph.toCenter[1], lerpTime);
+    outerCircleRadius = morph.fromRadius + (calculatedOuterCircleRadius - morph.fromRadius) * lerpTime;
+    outerCircleAlpha = lerp(morph.fromOuterCircleAlpha, morph.toOuterCircleAlpha, lerpTime);
+    outerCirclePaint.setColor(ColorUtils.blendARGB(morph.fromOuterCircleColor, morph.toOuterCircleColor, lerpTime));
+    outerCirclePath.reset();
+    outerCirclePath.addCircle(outerCircleCenter[0], outerCircleCenter[1], outerCircleRadius, Path.Direction.CW);
+
+    targetBounds.set(
+        lerp(morph.fromTargetBounds.left, morph.toTargetBounds.left, lerpTime),
+        lerp(morph.fromTargetBounds.top, morph.toTargetBounds.top, lerpTime),
+        lerp(morph.fromTargetBounds.right, morph.toTargetBounds.right, lerpTime),
+        lerp(morph.fromTargetBounds.bottom, morph.toTargetBounds.bottom, lerpTime));
+    targetCircleRadius = morph.fromTargetCircleRadius + (TARGET_RADIUS - morph.fromTargetCircleRadius) * lerpTime;
+    targetCircleAlpha = 255;
+    targetCirclePulseAlpha = 0;
+    final int targetCircleColor = ColorUtils.blendARGB(morph.fromTargetCircleColor, morph.toTargetCircleColor, lerpTime);
+    targetCirclePaint.setColor(targetCircleColor);
+    targetCirclePulsePaint.setColor(targetCircleColor);
+
+    // Cross-fade the text, the outgoing text is gone by the time the incoming text shows up
+    textAlpha = (int) (delayedLerp(lerpTime, 0.5f) * 255);
+    buttonAlpha = textAlpha;
+
+    // Both the previous and the current content have to be redrawn
+    calculateDrawingBounds();
+    invalidate();
+    if (outlineProvider != null && Build.VERSION.SDK_INT >= 21) {
+      invalidateOutline();
+    }
+  }
+
+  private void drawMorphSource(Canvas canvas, Morph morph) {
+    final int alpha = (int) ((1.0f - Math.min(1.0f, morphAnimation.getAnimatedFraction() * 2.0f)) * 255);
+    if (alpha <= 0 || morph.fromTitleLayout == null) {
+      return;
     }
+
+    final int saveCount = canvas.save();
+    {
+      canvas.translate(morph.fromTextBounds.left, morph.fromTextBounds.top);
+      morph.fromTitleLayout.getPaint().setAlpha(alpha);
+      morph.fromTitleLayout.draw(canvas);
+
+      if (morph.fromDescriptionLayout != null) {
+        canvas.translate(0, morph.fromTitleLayout.getHeight() + TEXT_SPACING);
+        morph.fromDescriptionLayout.getPaint().setAlpha((int) (morph.fromDescriptionTextAlpha * alpha));
+        morph.fromDescriptionLayout.draw(canvas);
+      }
+    }
+    canvas.restoreToCount(saveCount);
+  }
+
+  private static int lerp(int from, int to, float lerpTime) {
+    return (int) (from + (to - from) * lerpTime);
+  }
+
+  private void startPulsing() {
+    pulseAnimation.start();
+    isInteractable = true;
+    startPreparing();
+    if (listener != null) {
+      listener.onTargetShown(this);
+    }
+  }
+
+  /**
+   * Resets everything that depends on {@link #target} to its defaults and then applies the
+   * target's options, so that this view can be bound to a new target
+   */
+  private void resetForTarget(Context context) {
+    if (textPaintsShared) {
+      newTextPaints();
+    }
+
+    title = target.title;
+    description = target.description;
+    buttonText = target.buttonText;
+
+    TARGET_PADDING = UiUtil.dp(context, calculateTargetPadding());
+    TARGET_RADIUS = UiUtil.dp(context, target.targetRadius);
+    TARGET_PULSE_RADIUS = (int) (0.1f * TARGET_RADIUS);
+
+    buttonPaint.setColor(Color.parseColor("#456FCC"));
+
+    outerCirclePaint.setAlpha((int) (target.outerCircleAlpha * 255.0f));
+    targetCirclePaint.setXfermode(null);
+
+    if (outlineProvider != null && Build.VERSION.SDK_INT >= 21) {
+      outlineProvider = null;
+      setOutlineProvider(ViewOutlineProvider.BACKGROUND);
+      setElevation(0);
+    }
+
+    applyTargetOptions(context);
+  }
+
+  private void newTextPaints() {
+    buttonTextPaint = new TextPaint();
+    buttonTextPaint.setAntiAlias(true);
+
+    titlePaint = new TextPaint();
+    titlePaint.setAntiAlias(true);
+
+    descriptionPaint = new TextPaint();
+    descriptionPaint.setAntiAlias(true);
+    textPaintsShared = false;
   }
 
   protected void applyTargetOptions(Context context) {
     shouldTintTarget = !target.transparentTarget && target.tintTarget;
     shouldDrawShadow = target.drawShadow;
     cancelable = target.cancelable;
+    detachCustomElement();
     customElement = target.customElement;
+    if (customElement != null) {
+      if (!(customElement instanceof LegacyCustomElement)) {
+        customElementCache = CustomElementCache.create();
+      }
+      customElement.onAttach(customElementInvalidator);
+    }
 
     // We can't clip out portions of a view outline, so if the user specified a transparent
     // target, we need to fallback to drawing a jittered shadow approximation
@@ -623,11 +1052,7 @@ public class TapTargetView extends View {
       setElevation(SHADOW_DIM);
     }
 
-    if (shouldDrawShadow && outlineProvider == null && Build.VERSION.SDK_INT < 18) {
-      setLayerType(LAYER_TYPE_SOFTWARE, null);
-    } else {
-      setLayerType(LAYER_TYPE_HARDWARE, null);
-    }
+    updateLayerType();
 
     final Resources.Theme theme = context.getTheme();
     isDark = UiUtil.themeIntAttr(context, "isLightTheme") == 0;
@@ -641,12 +1066,7 @@ public class TapTargetView extends View {
       outerCirclePaint.setColor(Color.WHITE);
     }
 
-    final Integer targetCircleColor = target.targetCircleColorInt(context);
-    if (targetCircleColor != null) {
-      targetCirclePaint.setColor(targetCircleColor);
-    } else {
-      targetCirclePaint.setColor(isDark ? Color.BLACK : Color.WHITE);
-    }
+    targetCirclePaint.setColor(targetCircleColor(context, target, isDark));
 
     if (target.transparentTarget) {
       targetCirclePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
@@ -661,6 +1081,43 @@ public class TapTargetView extends View {
       dimColor = -1;
     }
 
+    applyTextOptions(context, target, isDark, titlePaint, descriptionPaint, buttonTextPaint);
+
+    final Integer buttonColor = target.buttonColorInt(context);
+    if (buttonColor != null) {
+      buttonPaint.setColor(buttonColor);
+    }
+
+    buttonCornerRadius = target.buttonCornersRadius(context);
+
+    buttonVerticalPadding = target.buttonVerticalPadding(context);
+
+    buttonHorizontalPadding = target.buttonHorizontalPadding(context);
+  }
+
+  /** Returns the color of the target circle, which is also used to tint the target's icon **/
+  static int targetCircleColor(Context context, TapTarget target, boolean isDark) {
+    final Integer targetCircleColor = target.targetCircleColorInt(context);
+    if (targetCircleColor != null) {
+      return targetCircleColor;
+    }
+
+    return isDark ? Color.BLACK : Color.WHITE;
+  }
+
+  /** Configures the given paints to draw the text of the given target **/
+  static void applyTextOptions(Context context, TapTarget target, boolean isDark, TextPaint titlePaint,
+                               TextPaint descriptionPaint, TextPaint buttonTextPaint) {
+    buttonTextPaint.setTextSize(target.buttonTextSizePx(context));
+    buttonTextPaint.setTypeface(Typeface.create("sans-serif-medium", Typeface.NORMAL));
+
+    titlePaint.setTextSize(target.titleTextSizePx(context));
+    titlePaint.setTypeface(Typeface.create("sans-serif-medium", Typeface.NORMAL));
+
+    descriptionPaint.setTextSize(target.descriptionTextSizePx(context));
+    descriptionPaint.setTypeface(Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL));
+    descriptionPaint.setAlpha((int) (0.54f * 255.0f));
+
     final Integer titleTextColor = target.titleTextColorInt(context);
     if (titleTextColor != null) {
       titlePaint.setColor(titleTextColor);
@@ -682,17 +1139,6 @@ public class TapTargetView extends View {
       buttonTextPaint.setColor(titlePaint.getColor());
     }
 
-    final Integer buttonColor = target.buttonColorInt(context);
-    if (buttonColor != null) {
-      buttonPaint.setColor(buttonColor);
-    }
-
-    buttonCornerRadius = target.buttonCornersRadius(context);
-
-    buttonVerticalPadding = target.buttonVerticalPadding(context);
-
-    buttonHorizontalPadding = target.buttonHorizontalPadding(context);
-
     if (target.titleTypeface != null) {
       titlePaint.setTypeface(target.titleTypeface);
     }
@@ -715,20 +1161,38 @@ public class TapTargetView extends View {
   void onDismiss(boolean userInitiated) {
     if (isDismissed) return;
 
-    isDismissing = false;
-    isDismissed = true;
+    tearDown(false);
+    if (listener != null) {
+      listener.onTargetDismissed(this, userInitiated);
+    }
+  }
 
+  /**
+   * Stops everything the current target started, without telling its listener. The dim
+   * background may be kept for a target that is bound right away, so it doesn't flicker
+   */
+  private void tearDown(boolean keepDim) {
+    isDismissing = false;
+    isDismissed = true;
+    morph = null;
+
+    // Update listeners are kept, as this view may be rebound to another target
     for (final ValueAnimator animator : animators) {
       animator.cancel();
-      animator.removeAllUpdateListeners();
+    }
+
+    if (dimBackground != null && !keepDim) {
+      dimBackground = null;
+      ViewCompat.setBackground(this, null);
+      updateLayerType();
     }
 
     ViewUtil.removeOnGlobalLayoutListener(getViewTreeObserver(), globalLayoutListener);
+    stopTracking();
+    cancelPassThrough();
+    detachCustomElement();
+    stopAnimatedIcon();
     visible = false;
-
-    if (listener != null) {
-      listener.onTargetDismissed(this, userInitiated);
-    }
   }
 
   @Override
@@ -739,10 +1203,6 @@ public class TapTargetView extends View {
       canvas.clipRect(0, topBoundary, getWidth(), bottomBoundary);
     }
 
-    if (dimColor != -1) {
-      canvas.drawColor(dimColor);
-    }
-
     int saveCount;
     outerCirclePaint.setAlpha(outerCircleAlpha);
     if (shouldDrawShadow && outlineProvider == null) {
@@ -764,6 +1224,11 @@ public class TapTargetView extends View {
     canvas.drawCircle(targetBounds.centerX(), targetBounds.centerY(),
         targetCircleRadius, targetCirclePaint);
 
+    final Morph morph = this.morph;
+    if (morph != null) {
+      drawMorphSource(canvas, morph);
+    }
+
     saveCount = canvas.save();
     {
       canvas.translate(textBounds.left, textBounds.top);
@@ -805,7 +1270,10 @@ public class TapTargetView extends View {
     {
       if (customElement != null) {
         canvas.translate(buttonBounds.left, buttonBounds.bottom);
-        customElement.draw(canvas, textAlpha);
+        if (customElementCache == null || !customElementCache.draw(canvas, customElement, customDrawBounds,
+            buttonBounds.left, buttonBounds.bottom, textAlpha)) {
+          customElement.draw(canvas, textAlpha);
+        }
       }
     }
     canvas.restoreToCount(saveCount);
@@ -817,10 +1285,11 @@ public class TapTargetView extends View {
             targetBounds.centerY() - (int) (tintedTarget.getHeight() / 2));
         canvas.drawBitmap(tintedTarget, 0, 0, targetCirclePaint);
       } else if (target.icon != null) {
-        canvas.translate(targetBounds.centerX() - (int) (target.icon.getBounds().width() / 2),
-            targetBounds.centerY() - (int) (target.icon.getBounds().height() / 2));
-        target.icon.setAlpha(targetCirclePaint.getAlpha());
-        target.icon.draw(canvas);
+        final Drawable icon = animatedIcon != null ? animatedIcon : target.icon;
+        canvas.translate(targetBounds.centerX() - (int) (icon.getBounds().width() / 2),
+            targetBounds.centerY() - (int) (icon.getBounds().height() / 2));
+        icon.setAlpha(targetCirclePaint.getAlpha());
+        icon.draw(canvas);
       }
     }
     canvas.restoreToCount(saveCount);
@@ -874,9 +1343,78 @@ public class TapTargetView extends View {
   public boolean onTouchEvent(MotionEvent e) {
     lastTouchX = e.getX();
     lastTouchY = e.getY();
+    if (passThroughView != null
+        || (e.getActionMasked() == MotionEvent.ACTION_DOWN && startPassThrough(e.getX(), e.getY()))) {
+      passThrough(e);
+      return true;
+    }
     return super.onTouchEvent(e);
   }
 
+  /** Ends a gesture being forwarded to the view underneath, so it is not left pressed **/
+  private void cancelPassThrough() {
+    final View view = passThroughView;
+    if (view == null) {
+      return;
+    }
+
+    passThroughView = null;
+    final long now = SystemClock.uptimeMillis();
+    final MotionEvent cancel = MotionEvent.obtain(now, now, MotionEvent.ACTION_CANCEL, 0, 0, 0);
+    view.dispatchTouchEvent(cancel);
+    cancel.recycle();
+  }
+
+  /** Whether a tap may still be handled for the current target **/
+  private boolean acceptsInput() {
+    return isInteractable && !inputConsumed && !isDismissing && !isDismissed;
+  }
+
+  private boolean startPassThrough(float x, float y) {
+    if (!target.passThrough || outerCircleCenter == null || !acceptsInput()) {
+      return false;
+    }
+
+    final View view = target.resolvedView();
+    if (view == null || !ViewCompat.isAttachedToWindow(view) || hitTest(x, y) != REGION_TARGET) {
+      return false;
+    }
+
+    // Events are forwarded in the coordinates of the view, which may be in another window
+    getLocationOnScreen(passThroughLocation);
+    passThroughDx = passThroughLocation[0];
+    passThroughDy = passThroughLocation[1];
+    view.getLocationOnScreen(passThroughLocation);
+    passThroughDx -= passThroughLocation[0];
+    passThroughDy -= passThroughLocation[1];
+    passThroughView = view;
+    return true;
+  }
+
+  /**
+   * Forwards the event to the view underneath the target. Once the gesture ends on the target,
+   * it is reported as a target click, exactly once
+   */
+  private void passThrough(MotionEvent e) {
+    final View view = passThroughView;
+    final MotionEvent forwarded = MotionEvent.obtain(e);
+    forwarded.offsetLocation(passThroughDx, passThroughDy);
+    view.dispatchTouchEvent(forwarded);
+    forwarded.recycle();
+
+    final int action = e.getActionMasked();
+    if (action != MotionEvent.ACTION_UP && action != MotionEvent.ACTION_CANCEL) {
+      return;
+    }
+
+    passThroughView = null;
+    if (action == MotionEvent.ACTION_UP && listener != null && acceptsInput()
+        && hitTest(e.getX(), e.getY()) == REGION_TARGET) {
+      inputConsumed = true;
+      listener.onTargetClick(this);
+    }
+  }
+
   @Override
   public boolean onKeyDown(int keyCode, KeyEvent event) {
     if (isVisible() && cancelable && keyCode == KeyEvent.KEYCODE_BACK) {
@@ -889,9 +1427,10 @@ public class TapTargetView extends View {
 
   @Override
   public boolean onKeyUp(int keyCode, KeyEvent event) {
-    if (isVisible() && isInteractable && cancelable
+    if (isVisible() && acceptsInput() && cancelable
         && keyCode == KeyEvent.KEYCODE_BACK && event.isTracking() && !event.isCanceled()) {
       isInteractable = false;
+      inputConsumed = true;
 
       if (listener != null) {
         listener.onTargetCancel(this);
@@ -912,8 +1451,11 @@ public class TapTargetView extends View {
    */
   public void dismiss(boolean tappedTarget) {
     isDismissing = true;
+    dismissStartedAt = SystemClock.uptimeMillis();
+    morph = null;
     pulseAnimation.cancel();
     expandAnimation.cancel();
+    morphAnimation.cancel();
     if (!visible || outerCircleCenter == null) {
       finishDismiss(tappedTarget);
       return;
@@ -927,7 +1469,154 @@ public class TapTargetView extends View {
 
   private void finishDismiss(boolean userInitiated) {
     onDismiss(userInitiated);
+
+    if (pendingTarget != null) {
+      final TapTarget target = pendingTarget;
+      final Listener listener = pendingListener;
+      final PreparedTarget preparedTarget = pendingPrepared;
+      pendingTarget = null;
+      pendingListener = null;
+      pendingPrepared = null;
+      bind(target, listener, preparedTarget, SystemClock.uptimeMillis() - dismissStartedAt);
+      return;
+    }
+
+    nextTarget = null;
+    if (prepared != null) {
+      prepared.cancel();
+      prepared = null;
+    }
+
     ViewUtil.removeView(parent, TapTargetView.this);
+    if (recyclable && getParent() == null && parent instanceof ViewGroup) {
+      ViewPool.of((ViewGroup) parent).recycle(this);
+    }
+  }
+
+  /**
+   * Points this view at another target while keeping it attached. If this view is being
+   * dismissed, the new target is bound once the dismiss animation has finished, otherwise the
+   * current target is dismissed immediately.
+   */
+  void rebind(TapTarget target, @Nullable Listener listener) {
+    if (target == null) throw new IllegalArgumentException("Target cannot be null");
+
+    final PreparedTarget preparedTarget = takePrepared(target);
+    if (isDismissing) {
+      pendingTarget = target;
+      pendingListener = listener;
+      pendingPrepared = preparedTarget;
+      return;
+    }
+
+    if (!isDismissed) {
+      onDismiss(false);
+    }
+
+    bind(target, listener, preparedTarget);
+  }
+
+  /**
+   * Points this view at another target by morphing the outer circle, target circle and text of
+   * the current target into those of the new one, rather than dismissing it and expanding again.
+   * Falls back to {@link #rebind(TapTarget, Listener)} if the current target is not fully shown.
+   */
+  void morphTo(TapTarget target, @Nullable Listener listener) {
+    if (target == null) throw new IllegalArgumentException("Target cannot be null");
+
+    if (isDismissing || isDismissed || !visible || outerCircleCenter == null || textBounds == null) {
+      rebind(target, listener);
+      return;
+    }
+
+    final Morph morph = new Morph(this);
+
+    // The outgoing text keeps drawing with the current paints, continue with copies of them
+    titlePaint = new TextPaint(titlePaint);
+    descriptionPaint = new TextPaint(descriptionPaint);
+    buttonTextPaint = new TextPaint(buttonTextPaint);
+
+    final PreparedTarget preparedTarget = takePrepared(target);
+    // The current target isn't dismissed, it turns into the new one, under the same dim
+    tearDown(true);
+    this.morph = morph;
+    bind(target, listener, preparedTarget);
+  }
+
+  /** Drops a rebind that is waiting for the dismiss animation to finish **/
+  void cancelRebind() {
+    pendingTarget = null;
+    pendingListener = null;
+    if (pendingPrepared != null) {
+      pendingPrepared.cancel();
+      pendingPrepared = null;
+    }
+  }
+
+  private void bind(TapTarget target, @Nullable Listener listener, @Nullable PreparedTarget preparedTarget) {
+    bind(target, listener, preparedTarget, 0);
+  }
+
+  private void bind(TapTarget target, @Nullable Listener listener, @Nullable PreparedTarget preparedTarget,
+                    long showDelayElapsed) {
+    this.showDelayElapsed = showDelayElapsed;
+    for (final ValueAnimator animator : animators) {
+      animator.cancel();
+    }
+
+    stopTracking();
+    // Regions of the app stay until it removes them, those of the last target are laid out again
+    removeBuiltInRegions();
+    this.target = target;
+    this.listener = listener != null ? listener : new Listener();
+
+    isDismissed = false;
+    isDismissing = false;
+    isInteractable = true;
+    inputConsumed = false;
+    cancelPassThrough();
+    visible = false;
+    restoredShown = false;
+
+    titleLayout = null;
+    descriptionLayout = null;
+    buttonTextLayout = null;
+    tintedTarget = null;
+    stopAnimatedIcon();
+    outerCircleCenter = null;
+    outerCircleRadius = 0;
+    outerCircleAlpha = 0;
+    targetCircleRadius = 0;
+    targetCircleAlpha = 0;
+    targetCirclePulseRadius = 0;
+    targetCirclePulseAlpha = 0;
+    textAlpha = 0;
+    buttonAlpha = 0;
+    outerCirclePath.reset();
+
+    resetForTarget(getContext());
+    if (preparedTarget != null) {
+      adopt(preparedTarget);
+    }
+
+    // The next target may dim differently, or not at all
+    if (getLayoutParams() instanceof WindowManager.LayoutParams) {
+      final WindowManager.LayoutParams params = (WindowManager.LayoutParams) getLayoutParams();
+      dimBehind = dimBehind(params, target, dimColor);
+      if (ViewCompat.isAttachedToWindow(this)) {
+        parent.updateViewLayout(this, params);
+      }
+    }
+
+    final ViewTreeObserver observer = getViewTreeObserver();
+    ViewUtil.removeOnGlobalLayoutListener(observer, globalLayoutListener);
+    observer.addOnGlobalLayoutListener(globalLayoutListener);
+
+    invalidate();
+    if (ViewCompat.isAttachedToWindow(this) && ViewUtil.isLaidOut(this)) {
+      // We won't be laid out again, so become ready right away
+      globalLayoutListener.onGlobalLayout();
+    }
   }
 
   /** Specify whether to draw a wireframe around the view, useful for debugging **/
@@ -943,6 +1632,49 @@ public class TapTargetView extends View {
     return !isDismissed && visible;
   }
 
+  /** Shows dimColor, unless the window does, as a background clipped to our boundaries **/
+  void updateDimBackground() {
+    if (dimColor == -1 || dimBehind) {
+      if (dimBackground != null) {
+        dimBackground = null;
+        ViewCompat.setBackground(this, null);
+        updateLayerType();
+      }
+      return;
+    }
+
+    final Rect insets = TargetLayout.dimInsets(topBoundary, bottomBoundary, getHeight());
+    if (dimBackground != null && dimBackgroundColor == dimColor && dimBackgroundInsets.equals(insets)) {
+      return;
+    }
+
+    dimBackgroundColor = dimColor;
+    dimBackgroundInsets.set(insets);
+    dimBackground = TargetLayout.newDimBackground(dimColor, insets);
+    ViewCompat.setBackground(this, dimBackground);
+    updateLayerType();
+  }
+
+  /**
+   * Picks a layer for drawing. A hardware layer would be redrawn on every frame of our animations
+   * along with the dim background, so we only keep one while the transparent target has to clear
+   * the dim and circles behind it
+   */
+  void updateLayerType() {
+    final int layerType;
+    if (shouldDrawShadow && outlineProvider == null && Build.VERSION.SDK_INT < 18) {
+      layerType = LAYER_TYPE_SOFTWARE;
+    } else if (dimBackground != null && !target.transparentTarget) {
+      layerType = LAYER_TYPE_NONE;
+    } else {
+      layerType = LAYER_TYPE_HARDWARE;
+    }
+
+    if (getLayerType() != layerType) {
+      setLayerType(layerType, null);
+    }
+  }
+
   void drawJitteredShadow(Canvas c) {
     final float baseAlpha = 0.20f * outerCircleAlpha;
     outerCircleShadowPaint.setStyle(Paint.Style.FILL_AND_STROKE);
@@ -1014,6 +1746,12 @@ public class TapTargetView extends View {
 
   void drawTintedTarget() {
     final Drawable icon = target.icon;
+    if (icon != null && isAnimated(icon)) {
+      // A snapshot would freeze it, it is tinted as it draws once we are ready instead
+      tintedTarget = null;
+      return;
+    }
+
     if (!shouldTintTarget || icon == null) {
       tintedTarget = null;
       return;
@@ -1024,47 +1762,209 @@ public class TapTargetView extends View {
     tintedTarget = drawBitmap(icon);
   }
 
+  static boolean isAnimated(Drawable drawable) {
+    return drawable instanceof Animatable;
+  }
+
+  /** Starts the target's icon if it is animated. Only called once we are ready to show it **/
+  private void startAnimatedIcon() {
+    final Drawable source = target.icon;
+    if (animatedIcon != null || source == null || !isAnimated(source)) {
+      return;
+    }
+
+    final Drawable.ConstantState state = source.getConstantState();
+    final Drawable icon = state != null ? state.newDrawable(getResources()).mutate() : source;
+    animatedIconShared = icon == source;
+    if (animatedIconShared) {
+      animatedIconColorFilter = DrawableCompat.getColorFilter(source);
+    } else {
+      icon.setBounds(source.getBounds());
+    }
+
+    animatedIcon = icon;
+    if (shouldTintTarget) {
+      icon.setColorFilter(new PorterDuffColorFilter(targetCirclePaint.getColor(), PorterDuff.Mode.SRC_ATOP));
+    }
+    icon.setCallback(this);
+    ((Animatable) icon).start();
+  }
+
+  private void stopAnimatedIcon() {
+    final Drawable icon = animatedIcon;
+    if (icon == null) {
+      return;
+    }
+
+    animatedIcon = null;
+    ((Animatable) icon).stop();
+    if (icon.getCallback() == this) {
+      icon.setCallback(null);
+    }
+    if (animatedIconShared) {
+      icon.setColorFilter(animatedIconColorFilter);
+      animatedIconShared = false;
+      animatedIconColorFilter = null;
+    }
+  }
+
+  @Override
+  protected boolean verifyDrawable(@NonNull Drawable who) {
+    return who == animatedIcon || super.verifyDrawable(who);
+  }
+
+  @Override
+  public void invalidateDrawable(@NonNull Drawable drawable) {
+    if (drawable != animatedIcon) {
+      super.invalidateDrawable(drawable);
+      return;
+    }
+
+    // The icon is part of our own drawing, which is recorded again as a whole
+    invalidate();
+  }
+
   Bitmap drawBitmap(@NonNull Drawable drawable) {
+    return tintBitmap(drawable, targetCirclePaint.getColor());
+  }
+
+  /** Draws the given drawable into a new bitmap, tinted with the given color **/
+  static Bitmap tintBitmap(@NonNull Drawable drawable, int color) {
     final Bitmap bitmap =  Bitmap.createBitmap(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(),
             Bitmap.Config.ARGB_8888);
     final Canvas canvas = new Canvas(bitmap);
-    drawable.setColorFilter(new PorterDuffColorFilter(
-            targetCirclePaint.getColor(), PorterDuff.Mode.SRC_ATOP));
+    drawable.setColorFilter(new PorterDuffColorFilter(color, PorterDuff.Mode.SRC_ATOP));
     drawable.draw(canvas);
     drawable.setColorFilter(null);
     return bitmap;
   }
 
+  /** Returns the width available to the text, which may be 0 or less before we are laid out **/
+  int textWidth() {
+    return TargetLayout.availableTextWidth(getWidth(), TEXT_MAX_WIDTH, TEXT_PADDING);
+  }
+
   void updateTextLayouts() {
-    final int textWidth = Math.min(getWidth(), TEXT_MAX_WIDTH) - TEXT_PADDING * 2;
+    final int textWidth = textWidth();
     if (textWidth <= 0) {
       return;
     }
 
-    titleLayout = new StaticLayout(title, titlePaint, textWidth,
-            Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
+    if (titleLayout != null && textWidth == laidOutTextWidth) {
+      // Nothing changed since the last time, e.g. a prepared target's text
+      return;
+    }
 
-    if (description != null) {
-      descriptionLayout = new StaticLayout(description, descriptionPaint, textWidth,
-              Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
-    } else {
-      descriptionLayout = null;
+    if (target.planStep != null && target.planStep.adoptText(this, textWidth)) {
+      return;
     }
 
-    if (buttonText != null) {
-      buttonTextLayout = new StaticLayout(buttonText, buttonTextPaint, textWidth,
-              Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
-    } else {
-      buttonTextLayout = null;
+    titleLayout = newTextLayout(title, titlePaint, textWidth);
+    descriptionLayout = description != null ? newTextLayout(description, descriptionPaint, textWidth) : null;
+    buttonTextLayout = buttonText != null ? newTextLayout(buttonText, buttonTextPaint, textWidth) : null;
+    laidOutTextWidth = textWidth;
+  }
+
+  /**
+   * Lays this view out at the given size before it is attached, so that its text and icon are
+   * ready by the time it is first laid out and drawn
+   */
+  void layoutAhead(int width, int height) {
+    if (width <= 0 || height <= 0 || ViewCompat.isAttachedToWindow(this)) {
+      return;
     }
+
+    measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+        MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+    layout(0, 0, width, height);
+    updateTextLayouts();
+    drawTintedTarget();
   }
 
-  float halfwayLerp(float lerp) {
-    if (lerp < 0.5f) {
-      return lerp / 0.5f;
+  /** Called by {@link TapTargetOverlayHost} once it has laid us out, in place of a global layout **/
+  void onHostLayout() {
+    if (!isDismissed && !visible) {
+      globalLayoutListener.onGlobalLayout();
+    }
+  }
+
+  /** Lays out the given text. This is safe to call from any thread **/
+  static StaticLayout newTextLayout(CharSequence text, TextPaint paint, int width) {
+    return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
+  }
+
+  /**
+   * Specify the target that is likely to be bound next. Its bounds, text and icon are prepared
+   * ahead of time, using idle time on the main thread and a background thread, once this view
+   * has finished expanding
+   */
+  void prepare(@Nullable TapTarget target) {
+    nextTarget = target;
+    if (pulseAnimation.isRunning()) {
+      startPreparing();
+    }
+  }
+
+  private void startPreparing() {
+    final TapTarget target = nextTarget;
+    nextTarget = null;
+    if (target == null || target == this.target) {
+      return;
     }
 
-    return (1.0f - lerp) / 0.5f;
+    if (prepared != null) {
+      if (prepared.target == target) {
+        return;
+      }
+      prepared.cancel();
+      prepared = null;
+    }
+
+    final int textWidth = textWidth();
+    if (textWidth <= 0) {
+      return;
+    }
+
+    final Context context = getContext();
+    prepared = new PreparedTarget(target, textWidth, targetCircleColor(context, target, isDark),
+        !target.transparentTarget && target.tintTarget);
+    applyTextOptions(context, target, isDark, prepared.titlePaint, prepared.descriptionPaint, prepared.buttonTextPaint);
+    prepared.start();
+  }
+
+  /** Returns the preparation for the given target, if any, handing over its ownership **/
+  @Nullable
+  private PreparedTarget takePrepared(TapTarget target) {
+    final PreparedTarget preparedTarget = prepared;
+    if (preparedTarget == null || preparedTarget.target != target) {
+      return null;
+    }
+
+    prepared = null;
+    return preparedTarget;
+  }
+
+  /** Uses whatever work the given preparation got done before we were bound to its target **/
+  private void adopt(PreparedTarget preparedTarget) {
+    preparedTarget.cancel();
+
+    if (preparedTarget.textLaidOut && preparedTarget.textWidth == textWidth()) {
+      titlePaint = preparedTarget.titlePaint;
+      descriptionPaint = preparedTarget.descriptionPaint;
+      buttonTextPaint = preparedTarget.buttonTextPaint;
+      titleLayout = preparedTarget.titleLayout;
+      descriptionLayout = preparedTarget.descriptionLayout;
+      buttonTextLayout = preparedTarget.buttonTextLayout;
+      laidOutTextWidth = preparedTarget.textWidth;
+    }
+
+    if (shouldTintTarget && preparedTarget.tintedTarget != null) {
+      tintedTarget = preparedTarget.tintedTarget;
+    }
+  }
+
+  float halfwayLerp(float lerp) {
+    return TargetLayout.halfwayLerp(lerp);
   }
 
   float delayedLerp(float lerp, float threshold) {
@@ -1086,13 +1986,174 @@ public class TapTargetView extends View {
 
   private int calculateBottomOfContent() {
     if (customElement != null) {
-      final Rect customBounds = customElement.getDrawBounds(buttonBounds.left , buttonBounds.bottom);
-      return customBounds.bottom;
+      customElementLayoutRequested = false;
+      customElement.onLayout(buttonBounds.left, buttonBounds.bottom, customDrawBounds, customClickBounds);
+      return customDrawBounds.bottom;
     } else {
       return buttonBounds.bottom;
     }
   }
 
+  /** Lays out everything again for the custom element's new size, unless we're mid transition **/
+  void onCustomElementLayoutRequested() {
+    if (!customElementLayoutRequested || customElement == null || outerCircleCenter == null
+        || morph != null || isDismissing || isDismissed) {
+      // Picked up by the next layout, or when the morph ends
+      return;
+    }
+
+    // The running animation picks up the new outer circle radius on its next frame
+    calculateDimensions();
+    layoutHitRegions();
+    calculateDrawingBounds();
+    invalidate();
+    if (outlineProvider != null && Build.VERSION.SDK_INT >= 21) {
+      invalidateOutline();
+    }
+  }
+
+  private void detachCustomElement() {
+    if (customElement != null) {
+      customElement.onDetach();
+      customElement = null;
+    }
+    if (customElementCache != null) {
+      customElementCache.release();
+      customElementCache = null;
+    }
+    customElementLayoutRequested = false;
+  }
+
+  /** Registers the built in regions, once the target has been laid out **/
+  void layoutHitRegions() {
+    hitRegions.setCircle(REGION_OUTER_CIRCLE, outerCircleCenter[0], outerCircleCenter[1],
+        calculatedOuterCircleRadius, Z_OUTER_CIRCLE);
+    if (customElement != null) {
+      hitRegions.setRect(REGION_CUSTOM_ELEMENT, customClickBounds, Z_CUSTOM_ELEMENT);
+    } else {
+      hitRegions.remove(REGION_CUSTOM_ELEMENT);
+    }
+    hitRegions.setCircle(REGION_TARGET, targetBounds.centerX(), targetBounds.centerY(), TARGET_RADIUS, Z_TARGET);
+    if (!buttonBounds.isEmpty()) {
+      hitRegions.setRoundRect(REGION_BUTTON, buttonBounds.left, buttonBounds.top, buttonBounds.right,
+          buttonBounds.bottom, buttonCornerRadius, Z_BUTTON);
+    } else {
+      // Without a button, its empty bounds would still match the point they are at
+      hitRegions.remove(REGION_BUTTON);
+    }
+  }
+
+  private void removeBuiltInRegions() {
+    hitRegions.remove(REGION_OUTER_CIRCLE);
+    hitRegions.remove(REGION_CUSTOM_ELEMENT);
+    hitRegions.remove(REGION_TARGET);
+    hitRegions.remove(REGION_BUTTON);
+  }
+
+  /**
+   * Returns the region at the given point, with the built in regions at their current, possibly
+   * animated, sizes and positions
+   */
+  int hitTest(float x, float y) {
+    hitRegions.moveCircle(REGION_OUTER_CIRCLE, outerCircleCenter[0], outerCircleCenter[1], outerCircleRadius);
+    hitRegions.moveRect(REGION_CUSTOM_ELEMENT, customClickBounds);
+    hitRegions.moveCircle(REGION_TARGET, targetBounds.centerX(), targetBounds.centerY(), targetCircleRadius);
+    hitRegions.moveRect(REGION_BUTTON, buttonBounds);
+    return hitRegions.hitTest(x, y);
+  }
+
+  /**
+   * Adds a rect region, optionally with rounded corners, in the coordinates of this view. Taps
+   * within it are reported to {@link Listener#onRegionClick(TapTargetView, int)}, unless a region
+   * with a higher z-order covers it. See {@link #Z_BUTTON} and the like for the built in regions.
+   * Replaces the region with the same id, if any. Regions stay when this view is bound to another
+   * target, e.g. the next one of a sequence, until they are removed
+   */
+  public void addInteractiveRegion(int regionId, Rect bounds, float cornerRadius, int z) {
+    checkRegionId(regionId);
+    if (bounds == null) throw new IllegalArgumentException("Given null bounds");
+    hitRegions.setRoundRect(regionId, bounds.left, bounds.top, bounds.right, bounds.bottom, cornerRadius, z);
+  }
+
+  /** Adds a circle region, see {@link #addInteractiveRegion(int, Rect, float, int)} **/
+  public void addInteractiveRegion(int regionId, float centerX, float centerY, float radius, int z) {
+    checkRegionId(regionId);
+    hitRegions.setCircle(regionId, centerX, centerY, radius, z);
+  }
+
+  /** Adds a region of any shape, see {@link #addInteractiveRegion(int, Rect, float, int)} **/
+  public void addInteractiveRegion(int regionId, HitShape shape, int z) {
+    checkRegionId(regionId);
+    if (shape == null) throw new IllegalArgumentException("Given null shape");
+    hitRegions.setShape(regionId, shape, z);
+  }
+
+  /** Removes a region added with {@link #addInteractiveRegion(int, Rect, float, int)} and the like **/
+  public void removeInteractiveRegion(int regionId) {
+    checkRegionId(regionId);
+    hitRegions.remove(regionId);
+  }
+
+  private static void checkRegionId(int regionId) {
+    if (regionId < 0) throw new IllegalArgumentException("Given negative region id: " + regionId);
+  }
+
+  /**
+   * Listens for draws of the tracked target's window, those of our own if it has no view.
+   * Both may be the same
+   */
+  private void startTracking() {
+    final View trackedView = target.resolvedView();
+    final ViewTreeObserver observer = trackedView != null
+        ? trackedView.getViewTreeObserver() : getViewTreeObserver();
+    if (observer == trackingObserver) {
+      return;
+    }
+
+    stopTracking();
+    trackingObserver = observer;
+    observer.addOnPreDrawListener(trackingListener);
+  }
+
+  private void stopTracking() {
+    if (trackingObserver != null && trackingObserver.isAlive()) {
+      trackingObserver.removeOnPreDrawListener(trackingListener);
+    }
+    trackingObserver = null;
+  }
+
+  /**
+   * Moves everything that was calculated for the target along with it, without laying out text
+   * again. Sizes are kept, a target that resizes is followed by its center
+   */
+  void followTarget() {
+    if (outerCircleCenter == null || textBounds == null || morph != null || isDismissed
+        || !target.currentBounds(trackedBounds)) {
+      return;
+    }
+
+    getLocationOnScreen(trackingOffset);
+    final int dx = trackedBounds.centerX() - trackingOffset[0] - targetBounds.centerX();
+    final int dy = trackedBounds.centerY() - trackingOffset[1] - targetBounds.centerY();
+    if (dx == 0 && dy == 0) {
+      return;
+    }
+
+    // Everything we currently cover has to be redrawn, as well as everything we will
+    invalidate(drawingBounds);
+    targetBounds.offset(dx, dy);
+    textBounds.offset(dx, dy);
+    buttonBounds.offset(dx, dy);
+    customClickBounds.offset(dx, dy);
+    customDrawBounds.offset(dx, dy);
+    outerCircleCenter[0] += dx;
+    outerCircleCenter[1] += dy;
+    outerCirclePath.reset();
+    outerCirclePath.addCircle(outerCircleCenter[0], outerCircleCenter[1], outerCircleRadius, Path.Direction.CW);
+    calculateDrawingBounds();
+    invalidateViewAndOutline(drawingBounds);
+  }
+
   void calculateDrawingBounds() {
     if (outerCircleCenter == null) {
       // Called dismiss before we got a chance to display the tap target
@@ -1120,22 +2181,8 @@ public class TapTargetView extends View {
   }
 
   Rect getTextBounds() {
-    final int totalTextHeight = getTotalTextHeight();
-    final int totalTextWidth = getTotalTextWidth();
-
-    final int possibleTop = targetBounds.centerY() - TARGET_RADIUS - TARGET_PADDING - totalTextHeight;
-    final int top;
-    if (possibleTop > topBoundary) {
-      top = possibleTop;
-    } else {
-      top = targetBounds.centerY() + TARGET_RADIUS + TARGET_PADDING;
-    }
-
-    final int relativeCenterDistance = (getWidth() / 2) - targetBounds.centerX();
-    final int bias = relativeCenterDistance < 0 ? -TEXT_POSITIONING_BIAS : TEXT_POSITIONING_BIAS;
-    final int left = Math.max(TEXT_PADDING, targetBounds.centerX() - bias - totalTextWidth);
-    final int right = Math.min(getWidth() - TEXT_PADDING, left + totalTextWidth);
-    return new Rect(left, top, right, top + totalTextHeight);
+    return TargetLayout.textBounds(targetBounds, TARGET_RADIUS + TARGET_PADDING, getTotalTextWidth(),
+        getTotalTextHeight(), getWidth(), topBoundary, TEXT_PADDING, TEXT_POSITIONING_BIAS);
   }
 
   Rect getButtonBounds() {
@@ -1187,31 +2234,11 @@ public class TapTargetView extends View {
   }
 
   int getTotalTextHeight() {
-    if (titleLayout == null) {
-      return 0;
-    }
-
-    int textHeight = titleLayout.getHeight() + TEXT_SPACING;
-
-    if (descriptionLayout != null) {
-      textHeight += descriptionLayout.getHeight();
-    }
-
-    return textHeight ;
+    return TargetLayout.textHeight(titleLayout, descriptionLayout, TEXT_SPACING);
   }
 
   int getTotalTextWidth() {
-    if (titleLayout == null) {
-      return 0;
-    }
-
-    int textWidth = titleLayout.getWidth();
-
-    if (descriptionLayout != null) {
-      textWidth =  Math.max(textWidth, descriptionLayout.getWidth());
-    }
-
-    return textWidth;
+    return TargetLayout.textWidth(titleLayout, descriptionLayout);
   }
 
   boolean inGutter(int y) {
@@ -1223,15 +2250,11 @@ public class TapTargetView extends View {
   }
 
   int maxDistanceToPoints(int x1, int y1, Rect bounds) {
-    final double tl = distance(x1, y1, bounds.left, bounds.top);
-    final double tr = distance(x1, y1, bounds.right, bounds.top);
-    final double bl = distance(x1, y1, bounds.left, bounds.bottom);
-    final double br = distance(x1, y1, bounds.right, bounds.bottom);
-    return (int) Math.max(tl, Math.max(tr, Math.max(bl, br)));
+    return TargetLayout.maxDistanceToPoints(x1, y1, bounds);
   }
 
   double distance(int x1, int y1, int x2, int y2) {
-    return Math.sqrt(Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2));
+    return TargetLayout.distance(x1, y1, x2, y2);
   }
 
   void invalidateViewAndOutline(Rect bounds) {
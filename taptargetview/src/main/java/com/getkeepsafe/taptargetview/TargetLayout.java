@@ -0,0 +1,189 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.InsetDrawable;
+import android.os.Build;
+import android.text.StaticLayout;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.WindowManager;
+import androidx.annotation.Nullable;
+
+/**
+ * Geometry, text placement and dimming shared by {@link TapTargetView} and
+ * {@link MultiTapTargetView}, so that a target looks the same in either of them
+ */
+final class TargetLayout {
+  // In dp
+  static final int TARGET_PADDING = 30;
+  static final int TEXT_PADDING = 30;
+  static final int TEXT_SPACING = 8;
+  static final int TEXT_MAX_WIDTH = 360;
+  static final int TEXT_POSITIONING_BIAS = 20;
+  static final int CIRCLE_PADDING = 30;
+
+  private TargetLayout() {
+  }
+
+  /** Returns the width available to text, which may be 0 or less before the view is laid out **/
+  static int availableTextWidth(int width, int maxWidth, int padding) {
+    return Math.min(width, maxWidth) - padding * 2;
+  }
+
+  static int textHeight(@Nullable StaticLayout titleLayout, @Nullable StaticLayout descriptionLayout,
+                        int spacing) {
+    if (titleLayout == null) {
+      return 0;
+    }
+
+    int textHeight = titleLayout.getHeight() + spacing;
+
+    if (descriptionLayout != null) {
+      textHeight += descriptionLayout.getHeight();
+    }
+
+    return textHeight;
+  }
+
+  static int textWidth(@Nullable StaticLayout titleLayout, @Nullable StaticLayout descriptionLayout) {
+    if (titleLayout == null) {
+      return 0;
+    }
+
+    int textWidth = titleLayout.getWidth();
+
+    if (descriptionLayout != null) {
+      textWidth = Math.max(textWidth, descriptionLayout.getWidth());
+    }
+
+    return textWidth;
+  }
+
+  /**
+   * Places text of the given size above the target if there is room for it below the top
+   * boundary, below the target otherwise, and leaning towards the middle of the view
+   *
+   * @param targetReach How far the text has to stay away from the center of the target
+   */
+  static Rect textBounds(Rect targetBounds, int targetReach, int textWidth, int textHeight, int width,
+                         int topBoundary, int padding, int bias) {
+    final int possibleTop = targetBounds.centerY() - targetReach - textHeight;
+    final int top;
+    if (possibleTop > topBoundary) {
+      top = possibleTop;
+    } else {
+      top = targetBounds.centerY() + targetReach;
+    }
+
+    final int relativeCenterDistance = (width / 2) - targetBounds.centerX();
+    final int leaning = relativeCenterDistance < 0 ? -bias : bias;
+    final int left = Math.max(padding, targetBounds.centerX() - leaning - textWidth);
+    final int right = Math.min(width - padding, left + textWidth);
+    return new Rect(left, top, right, top + textHeight);
+  }
+
+  static int maxDistanceToPoints(int x1, int y1, Rect bounds) {
+    final double tl = distance(x1, y1, bounds.left, bounds.top);
+    final double tr = distance(x1, y1, bounds.right, bounds.top);
+    final double bl = distance(x1, y1, bounds.left, bounds.bottom);
+    final double br = distance(x1, y1, bounds.right, bounds.bottom);
+    return (int) Math.max(tl, Math.max(tr, Math.max(bl, br)));
+  }
+
+  static double distance(int x1, int y1, int x2, int y2) {
+    return Math.sqrt(Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2));
+  }
+
+  static float halfwayLerp(float lerp) {
+    if (lerp < 0.5f) {
+      return lerp / 0.5f;
+    }
+
+    return (1.0f - lerp) / 0.5f;
+  }
+
+  /**
+   * Calculates the part of the window that is not covered by system ui, relative to the window,
+   * as {@code [top, bottom]}
+   *
+   * @param boundingParent The view whose position is used in place of system ui that the window
+   *                       draws behind, i.e. with translucent bars
+   */
+  static void calculateBoundaries(Context context, View boundingParent, int[] outBoundaries) {
+    final boolean hasKitkat = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    final boolean translucentStatusBar;
+    final boolean translucentNavigationBar;
+    final boolean layoutNoLimits;
+
+    if (context instanceof Activity) {
+      Activity activity = (Activity) context;
+      final int flags = activity.getWindow().getAttributes().flags;
+      translucentStatusBar = hasKitkat && (flags & WindowManager.LayoutParams.FLAG_TRANSLUCENT_STATUS) != 0;
+      translucentNavigationBar = hasKitkat && (flags & WindowManager.LayoutParams.FLAG_TRANSLUCENT_NAVIGATION) != 0;
+      layoutNoLimits = (flags & WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS) != 0;
+    } else {
+      translucentStatusBar = false;
+      translucentNavigationBar = false;
+      layoutNoLimits = false;
+    }
+
+    final Rect rect = new Rect();
+    boundingParent.getWindowVisibleDisplayFrame(rect);
+    int[] parentLocation = new int[2];
+    boundingParent.getLocationInWindow(parentLocation);
+
+    if (translucentStatusBar) {
+      rect.top = parentLocation[1];
+    }
+    if (translucentNavigationBar) {
+      rect.bottom = parentLocation[1] + boundingParent.getHeight();
+    }
+
+    // We bound the boundaries to be within the screen's coordinates to
+    // handle the case where the flag FLAG_LAYOUT_NO_LIMITS is set
+    if (layoutNoLimits) {
+      final WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+      final DisplayMetrics displayMetrics = new DisplayMetrics();
+      windowManager.getDefaultDisplay().getMetrics(displayMetrics);
+      outBoundaries[0] = Math.max(0, rect.top);
+      outBoundaries[1] = Math.min(rect.bottom, displayMetrics.heightPixels);
+    } else {
+      outBoundaries[0] = rect.top;
+      outBoundaries[1] = rect.bottom;
+    }
+  }
+
+  /**
+   * Returns the insets that clip a dim background of a view with the given height to the given
+   * boundaries, or no insets while the boundaries are unknown
+   */
+  static Rect dimInsets(int topBoundary, int bottomBoundary, int height) {
+    final boolean clipped = topBoundary > 0 && bottomBoundary > 0;
+    final int top = clipped ? topBoundary : 0;
+    final int bottom = clipped ? Math.max(0, height - bottomBoundary) : 0;
+    return new Rect(0, top, 0, bottom);
+  }
+
+  static Drawable newDimBackground(int dimColor, Rect insets) {
+    return new InsetDrawable(new ColorDrawable(dimColor), insets.left, insets.top, insets.right, insets.bottom);
+  }
+}
@@ -24,32 +24,67 @@ import android.view.ViewGroup;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 
-import java.util.ArrayList;
 import java.util.Stack;
 
 import androidx.annotation.IdRes;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.Toolbar;
 
+/**
+ * Targets a view within a toolbar. The view is only looked up once the target is about to be
+ * shown, so building a target (or a whole sequence of them) never touches the toolbar's hierarchy
+ * and works before its menu has been inflated.
+ */
 class ToolbarTapTarget extends ViewTapTarget {
+  private final View toolbar;
+  @IdRes
+  private final int menuItemId;
+  private final boolean findNavView;
+
   ToolbarTapTarget(Toolbar toolbar, @IdRes int menuItemId,
                    CharSequence title, @Nullable CharSequence description, @Nullable CharSequence buttonText) {
-    super(toolbar.findViewById(menuItemId), title, description, buttonText);
+    this((View) toolbar, menuItemId, false, title, description, buttonText);
   }
 
   ToolbarTapTarget(android.widget.Toolbar toolbar, @IdRes int menuItemId,
                    CharSequence title, @Nullable CharSequence description, @Nullable CharSequence buttonText) {
-    super(toolbar.findViewById(menuItemId), title, description, buttonText);
+    this((View) toolbar, menuItemId, false, title, description, buttonText);
   }
 
   ToolbarTapTarget(Toolbar toolbar, boolean findNavView,
                    CharSequence title, @Nullable CharSequence description, @Nullable CharSequence buttonText) {
-    super(findNavView ? findNavView(toolbar) : findOverflowView(toolbar), title, description, buttonText);
+    this((View) toolbar, View.NO_ID, findNavView, title, description, buttonText);
   }
 
   ToolbarTapTarget(android.widget.Toolbar toolbar, boolean findNavView,
                    CharSequence title, @Nullable CharSequence description, @Nullable CharSequence buttonText) {
-    super(findNavView ? findNavView(toolbar) : findOverflowView(toolbar), title, description, buttonText);
+    this((View) toolbar, View.NO_ID, findNavView, title, description, buttonText);
+  }
+
+  private ToolbarTapTarget(View toolbar, @IdRes int menuItemId, boolean findNavView,
+                           CharSequence title, @Nullable CharSequence description, @Nullable CharSequence buttonText) {
+    super(title, description, buttonText);
+    if (toolbar == null) {
+      throw new IllegalArgumentException("Given null toolbar");
+    }
+
+    this.toolbar = toolbar;
+    this.menuItemId = menuItemId;
+    this.findNavView = findNavView;
+  }
+
+  /**
+   * Returns null when the view is not there (yet), e.g. before the menu is inflated, so that the
+   * target is reported as unavailable instead of crashing from within a layout callback
+   */
+  @Nullable
+  @Override
+  View resolveView() {
+    if (menuItemId != View.NO_ID) {
+      return toolbar.findViewById(menuItemId);
+    }
+
+    return findNavView ? findNavView(toolbar) : findOverflowView(toolbar);
   }
 
   private static ToolbarProxy proxyOf(Object instance) {
@@ -67,46 +102,54 @@ class ToolbarTapTarget extends ViewTapTarget {
     throw new IllegalStateException("Couldn't provide proper toolbar proxy instance");
   }
 
+  @Nullable
   private static View findNavView(Object instance) {
     final ToolbarProxy toolbar = proxyOf(instance);
 
-    // First we try to find the view via its content description
-    final CharSequence currentDescription = toolbar.getNavigationContentDescription();
-    final boolean hadContentDescription = !TextUtils.isEmpty(currentDescription);
-    final CharSequence sentinel = hadContentDescription ? currentDescription : "taptarget-findme";
-    toolbar.setNavigationContentDescription(sentinel);
-
-    final ArrayList<View> possibleViews = new ArrayList<>(1);
-    toolbar.findViewsWithText(possibleViews, sentinel, View.FIND_VIEWS_WITH_CONTENT_DESCRIPTION);
-
-    if (!hadContentDescription) {
-      toolbar.setNavigationContentDescription(null);
-    }
-
-    if (possibleViews.size() > 0) {
-      return possibleViews.get(0);
-    }
-
-    // If that doesn't work, we try to grab it via matching its drawable
+    // The navigation button is always a direct child of the toolbar, so we only ever scan the
+    // toolbar's immediate children. We first match by drawable identity, then by content
+    // description, without modifying either
     final Drawable navigationIcon = toolbar.getNavigationIcon();
     if (navigationIcon == null) {
-      throw new IllegalStateException("Toolbar does not have a navigation view set!");
+      return null;
     }
 
+    final CharSequence navigationDescription = toolbar.getNavigationContentDescription();
+    final boolean hasContentDescription = !TextUtils.isEmpty(navigationDescription);
+    View describedCandidate = null;
+
     final int size = toolbar.getChildCount();
     for (int i = 0; i < size; ++i) {
       final View child = toolbar.getChildAt(i);
-      if (child instanceof ImageButton) {
-        final Drawable childDrawable = ((ImageButton) child).getDrawable();
-        if (childDrawable == navigationIcon) {
-          return child;
-        }
+      if (!(child instanceof ImageButton)) {
+        continue;
+      }
+
+      if (((ImageButton) child).getDrawable() == navigationIcon) {
+        return child;
+      }
+
+      if (describedCandidate == null && hasContentDescription
+          && TextUtils.equals(navigationDescription, child.getContentDescription())) {
+        describedCandidate = child;
       }
     }
 
-    throw new IllegalStateException("Could not find navigation view for Toolbar!");
+    if (describedCandidate != null) {
+      return describedCandidate;
+    }
+
+    // If that doesn't work, we fall-back to reading the toolbar's navigation button directly
+    try {
+      return (View) ReflectUtil.getPrivateField(toolbar.internalToolbar(), "mNavButtonView");
+    } catch (NoSuchFieldException e) {
+      throw new IllegalStateException("Could not find navigation view for Toolbar!", e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Unable to access navigation view for Toolbar!", e);
+    }
   }
 
+  @Nullable
   private static View findOverflowView(Object instance) {
     final ToolbarProxy toolbar = proxyOf(instance);
 
@@ -139,8 +182,15 @@ class ToolbarTapTarget extends ViewTapTarget {
     // The "ActionMenuPresenter" then holds a reference to an "OverflowMenuButton" which is the
     // desired target
     try {
+      // Either is null until the menu is inflated
       final Object actionMenuView = ReflectUtil.getPrivateField(toolbar.internalToolbar(), "mMenuView");
+      if (actionMenuView == null) {
+        return null;
+      }
       final Object actionMenuPresenter = ReflectUtil.getPrivateField(actionMenuView, "mPresenter");
+      if (actionMenuPresenter == null) {
+        return null;
+      }
       return (View) ReflectUtil.getPrivateField(actionMenuPresenter, "mOverflowButton");
     } catch (NoSuchFieldException e) {
       throw new IllegalStateException("Could not find overflow view for Toolbar!", e);
@@ -152,10 +202,6 @@ class ToolbarTapTarget extends ViewTapTarget {
   private interface ToolbarProxy {
     CharSequence getNavigationContentDescription();
 
-    void setNavigationContentDescription(CharSequence description);
-
-    void findViewsWithText(ArrayList<View> out, CharSequence toFind, int flags);
-
     Drawable getNavigationIcon();
 
     @Nullable
@@ -180,16 +226,6 @@ class ToolbarTapTarget extends ViewTapTarget {
       return toolbar.getNavigationContentDescription();
     }
 
-    @Override
-    public void setNavigationContentDescription(CharSequence description) {
-      toolbar.setNavigationContentDescription(description);
-    }
-
-    @Override
-    public void findViewsWithText(ArrayList<View> out, CharSequence toFind, int flags) {
-      toolbar.findViewsWithText(out, toFind, flags);
-    }
-
     @Override
     public Drawable getNavigationIcon() {
       return toolbar.getNavigationIcon();
@@ -229,16 +265,6 @@ class ToolbarTapTarget extends ViewTapTarget {
       return toolbar.getNavigationContentDescription();
     }
 
-    @Override
-    public void setNavigationContentDescription(CharSequence description) {
-      toolbar.setNavigationContentDescription(description);
-    }
-
-    @Override
-    public void findViewsWithText(ArrayList<View> out, CharSequence toFind, int flags) {
-      toolbar.findViewsWithText(out, toFind, flags);
-    }
-
     @Override
     public Drawable getNavigationIcon() {
       return toolbar.getNavigationIcon();
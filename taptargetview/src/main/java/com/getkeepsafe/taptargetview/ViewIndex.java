@@ -0,0 +1,214 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.text.TextUtils;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.IdRes;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Provides {@link TapTargetLocator}s for views within a container, such as bottom navigation
+ * items, tabs or chips.
+ * <p>
+ * The container is walked once, the first time any of its locators is used, and that index is
+ * shared by every locator created from this instance. Create one index per container and use it
+ * for all of the targets of a {@link TapTargetSequence}:
+ * <pre>
+ * final ViewIndex index = ViewIndex.of(bottomNavigation);
+ * sequence.targets(
+ *     TapTarget.forLocator(index.id(R.id.home), "Home"),
+ *     TapTarget.forLocator(index.contentDescription("Search"), "Search"));
+ * </pre>
+ * If a located view has since been removed from the container, or a view is not found, the
+ * container is indexed again before giving up.
+ */
+public final class ViewIndex {
+  private final ViewGroup container;
+  private final SparseArray<View> viewsById = new SparseArray<>();
+  private final Map<String, View> viewsByContentDescription = new HashMap<>();
+  private final Map<Object, View> viewsByTag = new HashMap<>();
+  private boolean indexed;
+
+  private ViewIndex(ViewGroup container) {
+    this.container = container;
+  }
+
+  /** Returns an index over the descendants of the given container **/
+  public static ViewIndex of(ViewGroup container) {
+    if (container == null) {
+      throw new IllegalArgumentException("Given null container");
+    }
+
+    return new ViewIndex(container);
+  }
+
+  /** Returns a locator for the first descendant with the given id **/
+  public TapTargetLocator id(@IdRes final int id) {
+    if (id == View.NO_ID) {
+      throw new IllegalArgumentException("Given invalid id");
+    }
+
+    return new TapTargetLocator() {
+      @Nullable
+      @Override
+      public View locate() {
+        View view = lookupId(id);
+        if (!isValid(view)) {
+          reindex();
+          view = lookupId(id);
+        }
+        return view;
+      }
+    };
+  }
+
+  /** Returns a locator for the first descendant with the given content description **/
+  public TapTargetLocator contentDescription(CharSequence description) {
+    if (TextUtils.isEmpty(description)) {
+      throw new IllegalArgumentException("Given empty content description");
+    }
+
+    final String key = description.toString();
+    return new TapTargetLocator() {
+      @Nullable
+      @Override
+      public View locate() {
+        View view = lookup(viewsByContentDescription, key);
+        if (!isValid(view)) {
+          reindex();
+          view = lookup(viewsByContentDescription, key);
+        }
+        return view;
+      }
+    };
+  }
+
+  /** Returns a locator for the first descendant whose tag equals the given tag **/
+  public TapTargetLocator tag(final Object tag) {
+    if (tag == null) {
+      throw new IllegalArgumentException("Given null tag");
+    }
+
+    return new TapTargetLocator() {
+      @Nullable
+      @Override
+      public View locate() {
+        View view = lookup(viewsByTag, tag);
+        if (!isValid(view)) {
+          reindex();
+          view = lookup(viewsByTag, tag);
+        }
+        return view;
+      }
+    };
+  }
+
+  /** Discards the current index, so that the container is walked again on the next lookup **/
+  public void invalidate() {
+    indexed = false;
+    viewsById.clear();
+    viewsByContentDescription.clear();
+    viewsByTag.clear();
+  }
+
+  @Nullable
+  private View lookupId(int id) {
+    ensureIndexed();
+    return viewsById.get(id);
+  }
+
+  @Nullable
+  private <K> View lookup(Map<K, View> views, K key) {
+    ensureIndexed();
+    return views.get(key);
+  }
+
+  private void ensureIndexed() {
+    if (!indexed) {
+      reindex();
+    }
+  }
+
+  /** Returns whether the given view is still a descendant of the container **/
+  private boolean isValid(@Nullable View view) {
+    if (view == null) {
+      return false;
+    }
+
+    View current = view;
+    while (current.getParent() instanceof View) {
+      current = (View) current.getParent();
+      if (current == container) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private void reindex() {
+    invalidate();
+
+    // Walk the container depth-first, in child order, so that the first match for a key is the
+    // same view findViewById() would return
+    final ArrayDeque<View> pending = new ArrayDeque<>();
+    pushChildren(pending, container);
+    while (!pending.isEmpty()) {
+      final View view = pending.pop();
+
+      final int id = view.getId();
+      if (id != View.NO_ID && viewsById.get(id) == null) {
+        viewsById.put(id, view);
+      }
+
+      final CharSequence description = view.getContentDescription();
+      if (!TextUtils.isEmpty(description)) {
+        putIfAbsent(viewsByContentDescription, description.toString(), view);
+      }
+
+      final Object tag = view.getTag();
+      if (tag != null) {
+        putIfAbsent(viewsByTag, tag, view);
+      }
+
+      if (view instanceof ViewGroup) {
+        pushChildren(pending, (ViewGroup) view);
+      }
+    }
+
+    indexed = true;
+  }
+
+  private static void pushChildren(ArrayDeque<View> pending, ViewGroup parent) {
+    for (int i = parent.getChildCount() - 1; i >= 0; --i) {
+      pending.push(parent.getChildAt(i));
+    }
+  }
+
+  private static <K> void putIfAbsent(Map<K, View> views, K key, View view) {
+    if (!views.containsKey(key)) {
+      views.put(key, view);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.view.ViewGroup;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+
+/**
+ * Keeps dismissed {@link TapTargetView}s of a window around, so that later targets can be shown
+ * without constructing a new view. A pool is stored as a tag on the window's decor view, so it
+ * never outlives its activity.
+ */
+final class ViewPool {
+  private static int maxSize = 0;
+
+  private final ArrayDeque<TapTargetView> views = new ArrayDeque<>();
+
+  private ViewPool() {
+  }
+
+  static void setMaxSize(int size) {
+    if (size < 0) throw new IllegalArgumentException("Given negative pool size");
+    maxSize = size;
+  }
+
+  static ViewPool of(ViewGroup decor) {
+    final Object tag = decor.getTag(R.id.tap_target_view_pool);
+    if (tag instanceof ViewPool) {
+      return (ViewPool) tag;
+    }
+
+    final ViewPool pool = new ViewPool();
+    decor.setTag(R.id.tap_target_view_pool, pool);
+    return pool;
+  }
+
+  boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  @Nullable
+  TapTargetView obtain() {
+    return views.poll();
+  }
+
+  void recycle(TapTargetView view) {
+    if (views.size() < maxSize && !views.contains(view)) {
+      views.push(view);
+    }
+  }
+}
@@ -20,11 +20,21 @@ import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import androidx.annotation.Nullable;
+import androidx.core.view.ViewCompat;
 import android.view.View;
 
 class ViewTapTarget extends TapTarget {
+  @Nullable
   final View view;
 
+  @Nullable
+  private ReadinessDispatcher.Waiter pendingLayout;
+
+  // The view last resolved, followed while tracking
+  @Nullable
+  private View resolvedView;
+  private final int[] location = new int[2];
+
   ViewTapTarget(View view, CharSequence title, @Nullable CharSequence description, @Nullable CharSequence buttonText) {
     super(title, description, buttonText);
     if (view == null) {
@@ -33,9 +43,48 @@ class ViewTapTarget extends TapTarget {
     this.view = view;
   }
 
+  /** For subclasses that locate their view lazily, see {@link #resolveView()} **/
+  ViewTapTarget(CharSequence title, @Nullable CharSequence description, @Nullable CharSequence buttonText) {
+    super(title, description, buttonText);
+    this.view = null;
+  }
+
+  /**
+   * Returns the view to target. This is only called from {@link #onReady(Runnable, Runnable)},
+   * right before the target is shown, so subclasses constructed without a view can locate it here instead of
+   * walking the view tree up front. Returns null if the view can't be found (yet), which makes
+   * the target unavailable.
+   */
+  @Nullable
+  View resolveView() {
+    return view;
+  }
+
   @Override
-  public void onReady(final Runnable runnable) {
-    ViewUtil.onLaidOut(view, new Runnable() {
+  public void onReady(Runnable runnable) {
+    onReady(runnable, () -> {
+      // Nothing to report to
+    });
+  }
+
+  @Override
+  public void onReady(Runnable onReady, Runnable onUnavailable) {
+    final View view = resolveView();
+    if (view == null) {
+      onUnavailable.run();
+      return;
+    }
+
+    awaitLayout(view, onReady, onUnavailable);
+  }
+
+  private void awaitLayout(final View view, final Runnable runnable, Runnable onUnavailable) {
+    // Only the latest request matters, e.g. when the hosting view is laid out again while we wait
+    if (pendingLayout != null) {
+      pendingLayout.cancel();
+    }
+
+    pendingLayout = ViewUtil.onLaidOut(view, new Runnable() {
       @Override
       public void run() {
         // Cache bounds
@@ -52,8 +101,28 @@ class ViewTapTarget extends TapTarget {
           icon.setBounds(0, 0, icon.getIntrinsicWidth(), icon.getIntrinsicHeight());
         }
 
+        pendingLayout = null;
+        resolvedView = view;
         runnable.run();
       }
-    });
+    }, onUnavailable, readyTimeout);
+  }
+
+  @Override
+  boolean currentBounds(Rect outBounds) {
+    final View view = resolvedView;
+    if (view == null || !ViewCompat.isAttachedToWindow(view)) {
+      return false;
+    }
+
+    view.getLocationOnScreen(location);
+    outBounds.set(location[0], location[1], location[0] + view.getWidth(), location[1] + view.getHeight());
+    return true;
+  }
+
+  @Nullable
+  @Override
+  View resolvedView() {
+    return resolvedView;
   }
 }
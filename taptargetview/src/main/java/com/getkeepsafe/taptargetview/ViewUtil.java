@@ -16,6 +16,7 @@
 package com.getkeepsafe.taptargetview;
 
 import android.os.Build;
+import androidx.annotation.Nullable;
 import androidx.core.view.ViewCompat;
 import android.view.View;
 import android.view.ViewManager;
@@ -26,34 +27,25 @@ class ViewUtil {
   }
 
   /** Returns whether or not the view has been laid out **/
-  private static boolean isLaidOut(View view) {
+  static boolean isLaidOut(View view) {
     return ViewCompat.isLaidOut(view) && view.getWidth() > 0 && view.getHeight() > 0;
   }
 
   /** Executes the given {@link java.lang.Runnable} when the view is laid out **/
   static void onLaidOut(final View view, final Runnable runnable) {
-    if (isLaidOut(view)) {
-      runnable.run();
-      return;
-    }
-
-    final ViewTreeObserver observer = view.getViewTreeObserver();
-    observer.addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-      @Override
-      public void onGlobalLayout() {
-        final ViewTreeObserver trueObserver;
-
-        if (observer.isAlive()) {
-          trueObserver = observer;
-        } else {
-          trueObserver = view.getViewTreeObserver();
-        }
-
-        removeOnGlobalLayoutListener(trueObserver, this);
+    ReadinessDispatcher.await(view, runnable, null, 0);
+  }
 
-        runnable.run();
-      }
-    });
+  /**
+   * Executes the given {@link java.lang.Runnable} when the view is laid out, or {@code onTimeout}
+   * if that doesn't happen within {@code timeoutMillis}
+   *
+   * @return The pending waiter, which can be canceled, or null if the view was already laid out
+   */
+  @Nullable
+  static ReadinessDispatcher.Waiter onLaidOut(View view, Runnable runnable,
+                                              @Nullable Runnable onTimeout, long timeoutMillis) {
+    return ReadinessDispatcher.await(view, runnable, onTimeout, timeoutMillis);
   }
 
   @SuppressWarnings("deprecation")
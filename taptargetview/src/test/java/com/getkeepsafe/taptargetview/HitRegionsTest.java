@@ -0,0 +1,166 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import android.graphics.Rect;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HitRegionsTest {
+  @Test
+  public void missesWithoutRegions() {
+    assertEquals(HitRegions.NONE, new HitRegions().hitTest(0, 0));
+  }
+
+  @Test
+  public void circleHitsWithinItsRadiusOnly() {
+    final HitRegions regions = new HitRegions();
+    regions.setCircle(1, 100, 100, 10, 0);
+
+    assertEquals(1, regions.hitTest(100, 100));
+    assertEquals(1, regions.hitTest(110, 100));
+    assertEquals(1, regions.hitTest(107, 107));
+    // Within the bounds, but outside the circle
+    assertEquals(HitRegions.NONE, regions.hitTest(109, 109));
+    assertEquals(HitRegions.NONE, regions.hitTest(111, 100));
+  }
+
+  @Test
+  public void roundRectMissesItsCornersOnly() {
+    final HitRegions regions = new HitRegions();
+    regions.setRoundRect(1, 0, 0, 100, 50, 10, 0);
+
+    assertEquals(1, regions.hitTest(50, 25));
+    assertEquals(1, regions.hitTest(0, 25));
+    assertEquals(1, regions.hitTest(50, 0));
+    assertEquals(1, regions.hitTest(3, 3));
+    assertEquals(HitRegions.NONE, regions.hitTest(1, 1));
+    assertEquals(HitRegions.NONE, regions.hitTest(99, 49));
+    assertEquals(HitRegions.NONE, regions.hitTest(101, 25));
+  }
+
+  @Test
+  public void cornerRadiusIsLimitedToHalfTheShortestSide() {
+    final HitRegions regions = new HitRegions();
+    regions.setRoundRect(1, 0, 0, 100, 20, 50, 0);
+
+    // A radius of 10 rather than 50 leaves the middle of the long sides square
+    assertEquals(1, regions.hitTest(50, 0));
+    assertEquals(HitRegions.NONE, regions.hitTest(1, 1));
+  }
+
+  @Test
+  public void topmostRegionWins() {
+    final HitRegions regions = new HitRegions();
+    regions.setCircle(2, 50, 50, 50, 200);
+    regions.setCircle(1, 50, 50, 100, 0);
+    regions.setCircle(3, 50, 50, 10, 300);
+
+    assertEquals(3, regions.hitTest(50, 50));
+    assertEquals(2, regions.hitTest(50, 20));
+    assertEquals(1, regions.hitTest(50, -40));
+  }
+
+  @Test
+  public void laterRegionWinsAtTheSameZ() {
+    final HitRegions regions = new HitRegions();
+    regions.setCircle(1, 50, 50, 10, 100);
+    regions.setCircle(2, 50, 50, 10, 100);
+
+    assertEquals(2, regions.hitTest(50, 50));
+  }
+
+  @Test
+  public void settingAnExistingIdReplacesIt() {
+    final HitRegions regions = new HitRegions();
+    regions.setCircle(1, 50, 50, 10, 100);
+    regions.setCircle(2, 50, 50, 10, 200);
+    regions.setCircle(1, 50, 50, 10, 300);
+
+    assertEquals(1, regions.hitTest(50, 50));
+
+    regions.setRoundRect(1, 200, 200, 300, 300, 0, 300);
+    assertEquals(2, regions.hitTest(50, 50));
+    assertEquals(1, regions.hitTest(250, 250));
+  }
+
+  @Test
+  public void movingKeepsTheZOrder() {
+    final HitRegions regions = new HitRegions();
+    regions.setCircle(1, 0, 0, 10, 300);
+    regions.setCircle(2, 100, 100, 10, 200);
+
+    regions.moveCircle(1, 100, 100, 10);
+    assertEquals(1, regions.hitTest(100, 100));
+
+    final Rect bounds = new Rect();
+    bounds.left = 200;
+    bounds.top = 200;
+    bounds.right = 300;
+    bounds.bottom = 300;
+    regions.setRoundRect(3, 0, 0, 10, 10, 0, 400);
+    regions.moveRect(3, bounds);
+    assertEquals(3, regions.hitTest(250, 250));
+    assertEquals(HitRegions.NONE, regions.hitTest(5, 5));
+  }
+
+  @Test
+  public void movingIgnoresRegionsOfAnotherType() {
+    final HitRegions regions = new HitRegions();
+    regions.setRoundRect(1, 0, 0, 10, 10, 0, 0);
+
+    regions.moveCircle(1, 100, 100, 10);
+    assertEquals(1, regions.hitTest(5, 5));
+    assertEquals(HitRegions.NONE, regions.hitTest(100, 100));
+  }
+
+  @Test
+  public void shapesDecideForThemselves() {
+    final HitRegions regions = new HitRegions();
+    regions.setShape(1, (x, y) -> x > y, 0);
+
+    assertEquals(1, regions.hitTest(10, 5));
+    assertEquals(HitRegions.NONE, regions.hitTest(5, 10));
+  }
+
+  @Test
+  public void removeDropsOnlyThatRegion() {
+    final HitRegions regions = new HitRegions();
+    regions.setCircle(1, 50, 50, 10, 100);
+    regions.setCircle(2, 50, 50, 20, 200);
+
+    regions.remove(2);
+    assertEquals(1, regions.hitTest(50, 50));
+    assertEquals(HitRegions.NONE, regions.hitTest(50, 65));
+
+    regions.remove(2);
+    assertEquals(1, regions.hitTest(50, 50));
+  }
+
+  @Test
+  public void growsPastItsInitialCapacity() {
+    final HitRegions regions = new HitRegions();
+    for (int i = 0; i < 20; ++i) {
+      regions.setCircle(i, i * 100, 0, 10, i);
+    }
+
+    for (int i = 0; i < 20; ++i) {
+      assertEquals(i, regions.hitTest(i * 100, 0));
+    }
+  }
+}
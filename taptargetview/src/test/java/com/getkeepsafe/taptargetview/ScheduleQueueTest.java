@@ -0,0 +1,241 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduleQueueTest {
+  /** Windows that are ready unless told otherwise **/
+  static class FakeWindows implements ScheduleQueue.Windows<String> {
+    final Set<String> stale = new HashSet<>();
+    final Set<String> waiting = new HashSet<>();
+    // Whether waiting windows have focus, or the platform can't tell when they gain it
+    boolean polled = true;
+    final List<String> watched = new ArrayList<>();
+    final List<String> dropped = new ArrayList<>();
+
+    @Override
+    public boolean isStale(String item) {
+      return stale.contains(item);
+    }
+
+    @Override
+    public boolean isReady(String item) {
+      return !waiting.contains(item);
+    }
+
+    @Override
+    public boolean needsPolling(String item) {
+      return polled;
+    }
+
+    @Override
+    public void onWaiting(String item) {
+      watched.add(item);
+    }
+
+    @Override
+    public void onDropped(String item) {
+      dropped.add(item);
+    }
+  }
+
+  private final ScheduleQueue<String> queue = new ScheduleQueue<>();
+  private final FakeWindows windows = new FakeWindows();
+
+  private List<String> showAll() {
+    final List<String> shown = new ArrayList<>();
+    String item;
+    while ((item = queue.next(windows)) != null) {
+      shown.add(item);
+      queue.end(item);
+    }
+    return shown;
+  }
+
+  @Test
+  public void showsHigherPrioritiesFirstThenInOrder() {
+    queue.add("low", 0);
+    queue.add("high", 10);
+    queue.add("second", 0);
+    queue.add("higher", 20);
+    queue.add("high again", 10);
+
+    final List<String> expected = new ArrayList<>();
+    expected.add("higher");
+    expected.add("high");
+    expected.add("high again");
+    expected.add("low");
+    expected.add("second");
+    assertEquals(expected, showAll());
+  }
+
+  @Test
+  public void showsOneAtATime() {
+    queue.add("a", 0);
+    queue.add("b", 0);
+
+    assertEquals("a", queue.next(windows));
+    assertEquals("a", queue.current());
+    assertFalse(queue.canShow());
+    assertNull(queue.next(windows));
+    assertEquals(1, queue.size());
+
+    // Ending anything but the one shown changes nothing
+    assertFalse(queue.end("b"));
+    assertNull(queue.next(windows));
+
+    assertTrue(queue.end("a"));
+    assertNull(queue.current());
+    assertTrue(queue.canShow());
+    assertEquals("b", queue.next(windows));
+  }
+
+  @Test
+  public void removedItemsAreNotShown() {
+    queue.add("a", 0);
+    queue.add("b", 0);
+
+    assertTrue(queue.remove("a"));
+    assertFalse(queue.contains("a"));
+    assertFalse(queue.remove("a"));
+    assertEquals(1, queue.size());
+    assertEquals("b", queue.next(windows));
+    // Only waiting items can be removed
+    assertFalse(queue.remove("b"));
+    assertEquals("b", queue.current());
+  }
+
+  @Test
+  public void showsNothingWhilePaused() {
+    queue.add("a", 0);
+    queue.pause();
+
+    assertFalse(queue.canShow());
+    assertNull(queue.next(windows));
+    assertFalse(queue.shouldRetry());
+    assertTrue(queue.contains("a"));
+
+    queue.resume();
+    assertTrue(queue.canShow());
+    assertEquals("a", queue.next(windows));
+  }
+
+  @Test
+  public void dropsStaleItems() {
+    queue.add("gone", 10);
+    queue.add("a", 0);
+    windows.stale.add("gone");
+
+    assertEquals("a", queue.next(windows));
+    assertFalse(queue.contains("gone"));
+    assertEquals(1, windows.dropped.size());
+    assertEquals("gone", windows.dropped.get(0));
+  }
+
+  @Test
+  public void forgetsAStaleItemBeingShown() {
+    queue.add("a", 0);
+    queue.add("b", 0);
+    assertEquals("a", queue.next(windows));
+
+    queue.dropStaleCurrent(windows);
+    assertEquals("a", queue.current());
+
+    windows.stale.add("a");
+    queue.dropStaleCurrent(windows);
+    assertNull(queue.current());
+    assertEquals("b", queue.next(windows));
+  }
+
+  @Test
+  public void passesOverItemsWhoseWindowIsntReady() {
+    queue.add("waiting", 10);
+    queue.add("ready", 0);
+    windows.waiting.add("waiting");
+
+    assertEquals("ready", queue.next(windows));
+    assertTrue(queue.contains("waiting"));
+    assertEquals(1, windows.watched.size());
+    assertEquals("waiting", windows.watched.get(0));
+
+    queue.end("ready");
+    windows.waiting.clear();
+    assertEquals("waiting", queue.next(windows));
+  }
+
+  @Test
+  public void givesUpPollingAfterMaxRetries() {
+    queue.add("waiting", 0);
+    windows.waiting.add("waiting");
+
+    for (int i = 0; i < ScheduleQueue.MAX_RETRIES; ++i) {
+      assertNull(queue.next(windows));
+      assertTrue(queue.shouldRetry());
+    }
+    assertNull(queue.next(windows));
+    assertFalse(queue.shouldRetry());
+    // It still waits, for its window to gain focus
+    assertTrue(queue.contains("waiting"));
+
+    queue.resetRetries();
+    assertNull(queue.next(windows));
+    assertTrue(queue.shouldRetry());
+  }
+
+  @Test
+  public void doesntPollWindowsThatTellWhenTheyAreReady() {
+    queue.add("waiting", 0);
+    windows.waiting.add("waiting");
+    windows.polled = false;
+
+    assertNull(queue.next(windows));
+    assertFalse(queue.shouldRetry());
+  }
+
+  @Test
+  public void startsPollingOverOnResumeAndNewItems() {
+    queue.add("waiting", 0);
+    windows.waiting.add("waiting");
+    for (int i = 0; i <= ScheduleQueue.MAX_RETRIES; ++i) {
+      queue.next(windows);
+    }
+    assertFalse(queue.shouldRetry());
+
+    queue.pause();
+    queue.resume();
+    queue.next(windows);
+    assertTrue(queue.shouldRetry());
+
+    for (int i = 0; i <= ScheduleQueue.MAX_RETRIES; ++i) {
+      queue.next(windows);
+    }
+    queue.add("other", 0);
+    windows.waiting.add("other");
+    queue.next(windows);
+    assertTrue(queue.shouldRetry());
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SequenceOrderTest {
+  private static SequenceOrder orderOf(int... ids) {
+    final SequenceOrder order = new SequenceOrder();
+    for (final int id : ids) {
+      order.add(id);
+    }
+    return order;
+  }
+
+  @Test
+  public void movesOnInOrderWithoutTransitions() {
+    final SequenceOrder order = orderOf(10, -1, 30);
+
+    assertEquals(0, order.nextIndex(-1, true));
+    assertEquals(1, order.nextIndex(0, true));
+    assertEquals(2, order.nextIndex(1, false));
+    assertEquals(3, order.nextIndex(2, true));
+  }
+
+  @Test
+  public void findsTheFirstTargetWithAnId() {
+    final SequenceOrder order = orderOf(10, 20, 10);
+
+    assertEquals(0, order.indexOf(10));
+    assertEquals(1, order.indexOf(20));
+    assertEquals(10, order.idAt(2));
+    assertEquals(3, order.size());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rejectsUnknownIds() {
+    orderOf(10, 20).indexOf(30);
+  }
+
+  @Test
+  public void checkAcceptsTransitionsBetweenTargets() {
+    final SequenceOrder order = orderOf(10, 20);
+    order.transition(10, true, 20);
+    order.transition(20, false, TapTargetSequence.FINISH);
+
+    order.checkTransitions();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void checkRejectsTransitionsFromUnknownTargets() {
+    final SequenceOrder order = orderOf(10, 20);
+    order.transition(30, true, 10);
+
+    order.checkTransitions();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void checkRejectsTransitionsToUnknownTargets() {
+    final SequenceOrder order = orderOf(10, 20);
+    order.transition(10, false, 30);
+
+    order.checkTransitions();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void targetsWithoutAnIdCantBeFound() {
+    orderOf(-1).indexOf(-1);
+  }
+
+  @Test
+  public void followsTransitionsByWhetherTheTargetWasClicked() {
+    final SequenceOrder order = orderOf(10, 20, 30, 40);
+    order.transition(10, true, 30);
+    order.transition(10, false, 40);
+
+    assertEquals(2, order.nextIndex(0, true));
+    assertEquals(3, order.nextIndex(0, false));
+    // Without a transition of their own, the others still move on in order
+    assertEquals(2, order.nextIndex(1, true));
+    assertEquals(3, order.nextIndex(2, false));
+  }
+
+  @Test
+  public void transitionsMayGoBack() {
+    final SequenceOrder order = orderOf(10, 20, 30);
+    order.transition(30, false, 10);
+
+    assertEquals(0, order.nextIndex(2, false));
+    assertEquals(3, order.nextIndex(2, true));
+  }
+
+  @Test
+  public void finishesThroughATransition() {
+    final SequenceOrder order = orderOf(10, 20, 30);
+    order.transition(10, true, TapTargetSequence.FINISH);
+
+    assertEquals(3, order.nextIndex(0, true));
+    assertEquals(1, order.nextIndex(0, false));
+  }
+
+  @Test
+  public void laterTransitionsReplaceEarlierOnes() {
+    final SequenceOrder order = orderOf(10, 20, 30);
+    order.transition(10, true, 30);
+    order.transition(10, true, 20);
+
+    assertEquals(1, order.nextIndex(0, true));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rejectsTransitionsToUnknownIds() {
+    final SequenceOrder order = orderOf(10, 20);
+    order.transition(10, true, 30);
+
+    order.nextIndex(0, true);
+  }
+
+  @Test
+  public void skipsNothingWithoutARegistry() {
+    assertEquals(0, orderOf(10, 20).skipShown(0, null));
+  }
+
+  @Test
+  public void skipsShownTargetsAlongTheirTransitions() {
+    final SequenceOrder order = orderOf(10, 20, 30, 40);
+    order.transition(10, true, 30);
+    final ShownTargetRegistry registry = new ShownTargetRegistry();
+    registry.markShown(10);
+    registry.markShown(30);
+
+    // 20 is passed over, as 10 leads to 30 when clicked
+    assertEquals(3, order.skipShown(0, registry));
+    assertEquals(1, order.skipShown(1, registry));
+  }
+
+  @Test
+  public void neverSkipsTargetsWithoutAnId() {
+    final SequenceOrder order = orderOf(10, -1, 30);
+    final ShownTargetRegistry registry = new ShownTargetRegistry();
+    registry.markShown(10);
+
+    assertEquals(1, order.skipShown(0, registry));
+  }
+
+  @Test
+  public void finishesWhenEverythingWasShown() {
+    final SequenceOrder order = orderOf(10, 20);
+    final ShownTargetRegistry registry = new ShownTargetRegistry();
+    registry.markShown(10);
+    registry.markShown(20);
+
+    assertEquals(2, order.skipShown(0, registry));
+  }
+
+  @Test
+  public void finishesOnCyclesOfShownTargets() {
+    final SequenceOrder order = orderOf(10, 20, 30);
+    order.transition(10, true, 20);
+    order.transition(20, true, 10);
+    final ShownTargetRegistry registry = new ShownTargetRegistry();
+    registry.markShown(10);
+    registry.markShown(20);
+
+    assertEquals(3, order.skipShown(0, registry));
+  }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShownTargetRegistryTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void marksTargetsIndividually() {
+    final ShownTargetRegistry registry = new ShownTargetRegistry();
+    registry.markShown(9);
+
+    assertTrue(registry.isShown(9));
+    assertFalse(registry.isShown(8));
+    assertFalse(registry.isShown(10));
+    assertFalse(registry.isShown(1));
+    assertFalse(registry.isShown(-1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNegativeIds() {
+    new ShownTargetRegistry().markShown(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsIdsPastTheMaximum() {
+    new ShownTargetRegistry().markShown(ShownTargetRegistry.MAX_ID);
+  }
+
+  @Test
+  public void keepsMarksAcrossLoads() throws IOException {
+    final File file = folder.newFile();
+    final ShownTargetRegistry first = new ShownTargetRegistry();
+    first.load(file);
+    first.markShown(3);
+    first.markShown(ShownTargetRegistry.MAX_ID - 1);
+    first.flush();
+
+    final ShownTargetRegistry second = new ShownTargetRegistry();
+    assertFalse(second.isLoaded());
+    assertFalse(second.isShown(3));
+
+    second.load(file);
+    assertTrue(second.isLoaded());
+    assertTrue(second.isShown(3));
+    assertTrue(second.isShown(ShownTargetRegistry.MAX_ID - 1));
+    assertFalse(second.isShown(4));
+  }
+
+  @Test
+  public void keepsMarksFromBeforeLoading() throws IOException {
+    final File file = folder.newFile();
+    final ShownTargetRegistry first = new ShownTargetRegistry();
+    first.load(file);
+    first.markShown(3);
+    first.flush();
+
+    final ShownTargetRegistry second = new ShownTargetRegistry();
+    second.markShown(5);
+    // Past what the file holds so far
+    second.markShown(100000);
+    second.load(file);
+    assertTrue(second.isShown(3));
+    assertTrue(second.isShown(5));
+    assertTrue(second.isShown(100000));
+    second.flush();
+
+    final ShownTargetRegistry third = new ShownTargetRegistry();
+    third.load(file);
+    assertTrue(third.isShown(3));
+    assertTrue(third.isShown(5));
+    assertTrue(third.isShown(100000));
+  }
+
+  @Test
+  public void resetBeforeLoadingForgetsEarlierRuns() throws IOException {
+    final File file = folder.newFile();
+    final ShownTargetRegistry first = new ShownTargetRegistry();
+    first.load(file);
+    first.markShown(3);
+    first.flush();
+
+    final ShownTargetRegistry second = new ShownTargetRegistry();
+    second.markShown(4);
+    second.reset();
+    second.markShown(5);
+    second.load(file);
+    assertFalse(second.isShown(3));
+    assertFalse(second.isShown(4));
+    assertTrue(second.isShown(5));
+  }
+
+  @Test
+  public void resetForgetsEverything() throws IOException {
+    final File file = folder.newFile();
+    final ShownTargetRegistry first = new ShownTargetRegistry();
+    first.load(file);
+    first.markShown(3);
+    first.reset();
+    first.flush();
+    assertFalse(first.isShown(3));
+
+    final ShownTargetRegistry second = new ShownTargetRegistry();
+    second.load(file);
+    assertFalse(second.isShown(3));
+  }
+
+  @Test
+  public void marksAfterAResetAreKept() throws IOException {
+    final File file = folder.newFile();
+    final ShownTargetRegistry first = new ShownTargetRegistry();
+    first.load(file);
+    first.markShown(3);
+    first.reset();
+    first.markShown(4);
+    // Past what the file holds so far
+    first.markShown(100000);
+    assertFalse(first.isShown(3));
+    assertTrue(first.isShown(4));
+    assertTrue(first.isShown(100000));
+    first.flush();
+
+    final ShownTargetRegistry second = new ShownTargetRegistry();
+    second.load(file);
+    assertFalse(second.isShown(3));
+    assertTrue(second.isShown(4));
+    assertTrue(second.isShown(100000));
+  }
+
+  @Test
+  public void keepsTrackInMemoryWithoutAFile() {
+    final ShownTargetRegistry registry = new ShownTargetRegistry();
+    registry.markShown(3);
+    registry.load(new File(folder.getRoot(), "missing/registry"));
+
+    assertTrue(registry.isLoaded());
+    assertTrue(registry.isShown(3));
+    registry.markShown(100000);
+    assertTrue(registry.isShown(100000));
+  }
+
+  @Test
+  public void runsCallbacksRightAwayOnceLoaded() throws IOException {
+    final ShownTargetRegistry registry = new ShownTargetRegistry();
+    registry.load(folder.newFile());
+
+    final boolean[] ran = new boolean[1];
+    registry.whenLoaded(() -> ran[0] = true);
+    assertTrue(ran[0]);
+  }
+}
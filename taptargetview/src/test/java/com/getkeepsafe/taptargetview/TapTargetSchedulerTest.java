@@ -0,0 +1,139 @@
+/**
+ * Copyright 2016 Keepsafe Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.getkeepsafe.taptargetview;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TapTargetSchedulerTest {
+  /** Records every callback, in place of the defaults, some of which dismiss the view **/
+  static class RecordingListener extends TapTargetView.Listener {
+    final List<String> calls = new ArrayList<>();
+
+    @Override
+    public void onButtonClick(TapTargetView view) {
+      calls.add("onButtonClick");
+    }
+
+    @Override
+    public void onTargetClick(TapTargetView view) {
+      calls.add("onTargetClick");
+    }
+
+    @Override
+    public void onTargetLongClick(TapTargetView view) {
+      calls.add("onTargetLongClick");
+    }
+
+    @Override
+    public void onTargetCancel(TapTargetView view) {
+      calls.add("onTargetCancel");
+    }
+
+    @Override
+    public void onOuterCircleClick(TapTargetView view) {
+      calls.add("onOuterCircleClick");
+    }
+
+    @Override
+    public void onTargetDismissed(TapTargetView view, boolean userInitiated) {
+      calls.add("onTargetDismissed");
+    }
+
+    @Override
+    public void onTargetShown(TapTargetView view) {
+      calls.add("onTargetShown");
+    }
+
+    @Override
+    public void onCustomElementClick(TapTargetView view) {
+      calls.add("onCustomElementClick");
+    }
+
+    @Override
+    public void onRegionClick(TapTargetView view, int regionId) {
+      calls.add("onRegionClick");
+    }
+
+    @Override
+    public void onTargetUnavailable(TapTargetView view) {
+      calls.add("onTargetUnavailable");
+    }
+  }
+
+  @Test
+  public void endListenerOverridesEveryCallback() {
+    for (final Method method : listenerMethods()) {
+      assertOverrides(TapTargetScheduler.EndListener.class, method);
+      // Otherwise the forwarding test below would miss the new callback
+      assertOverrides(RecordingListener.class, method);
+    }
+  }
+
+  @Test
+  public void endListenerForwardsEveryCallback() throws Exception {
+    final TapTargetScheduler.Request request =
+        new TapTargetScheduler.Request(TapTargetScheduler.get(), null, null, null, null);
+    for (final Method method : listenerMethods()) {
+      final RecordingListener delegate = new RecordingListener();
+      final TapTargetScheduler.EndListener listener = new TapTargetScheduler.EndListener(request, delegate);
+
+      method.invoke(listener, defaultArguments(method));
+
+      final List<String> expected = new ArrayList<>();
+      expected.add(method.getName());
+      assertEquals(expected, delegate.calls);
+    }
+  }
+
+  private static List<Method> listenerMethods() {
+    final List<Method> methods = new ArrayList<>();
+    for (final Method method : TapTargetView.Listener.class.getDeclaredMethods()) {
+      if (Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())) {
+        methods.add(method);
+      }
+    }
+    return methods;
+  }
+
+  private static void assertOverrides(Class<?> type, Method method) {
+    try {
+      type.getDeclaredMethod(method.getName(), method.getParameterTypes());
+    } catch (NoSuchMethodException e) {
+      fail(type.getSimpleName() + " does not override " + method.getName());
+    }
+  }
+
+  private static Object[] defaultArguments(Method method) {
+    final Class<?>[] types = method.getParameterTypes();
+    final Object[] arguments = new Object[types.length];
+    for (int i = 0; i < types.length; ++i) {
+      if (types[i] == boolean.class) {
+        arguments[i] = false;
+      } else if (types[i] == int.class) {
+        arguments[i] = 0;
+      }
+    }
+    return arguments;
+  }
+}